@@ -0,0 +1,103 @@
+package bavli;
+
+import java.io.*;
+import java.util.Properties;
+
+/**
+ * Application settings. A value is taken from the JVM system property of the same name
+ * (e.g. {@code -Dbavli.compress=true}) and otherwise from {@code bavli.properties} in the working directory.
+ */
+public class AppConfig {
+
+    /** Optional settings file, next to the {@code pages/} directory. */
+    public static final String CONFIG_FILE = "bavli.properties";
+
+    /**
+     * Setting for the directory holding {@code pages/} and the files built from it ({@code pages.pack},
+     * {@code pages.index}, {@code pages.manifest}, {@code pages.dict}); default the working directory.
+     */
+    public static final String DATA_DIR_SETTING = "bavli.data.dir";
+
+    private static volatile Properties fileProperties;
+
+    /** @return raw value for the key, or null if it is not set anywhere */
+    public static String get(String key) {
+        String value = System.getProperty(key);
+        if (value != null) {
+            return value.trim();
+        }
+        value = loadFile().getProperty(key);
+        return value != null ? value.trim() : null;
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key);
+        return value == null || value.isEmpty() ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.out.println("ערך לא חוקי להגדרה " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /** Byte size setting such as {@code 16777216}, {@code 512k}, {@code 256m} or {@code 1g}. */
+    public static long getBytes(String key, long defaultValue) {
+        String value = get(key);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return parseBytes(value);
+        } catch (NumberFormatException e) {
+            System.out.println("ערך לא חוקי להגדרה " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /** Parses a byte size with an optional k/m/g (or kb/mb/gb) suffix. */
+    static long parseBytes(String value) {
+        String number = value.trim().toLowerCase();
+        if (number.endsWith("b") && number.length() > 1 && !Character.isDigit(number.charAt(number.length() - 2))) {
+            number = number.substring(0, number.length() - 1); // תמיכה גם ב-256mb
+        }
+        long multiplier = 1;
+        char unit = number.isEmpty() ? ' ' : number.charAt(number.length() - 1);
+        if (unit == 'k') multiplier = 1024L;
+        else if (unit == 'm') multiplier = 1024L * 1024;
+        else if (unit == 'g') multiplier = 1024L * 1024 * 1024;
+        if (multiplier > 1) number = number.substring(0, number.length() - 1);
+        return Long.parseLong(number.trim()) * multiplier;
+    }
+
+    /** @return the file or directory {@code name} in the data directory ({@link #DATA_DIR_SETTING}) */
+    public static File dataFile(String name) {
+        String dir = get(DATA_DIR_SETTING);
+        return dir == null || dir.isEmpty() ? new File(name) : new File(dir, name);
+    }
+
+    /** Re-reads {@link #CONFIG_FILE} on next access. */
+    public static void reload() {
+        fileProperties = null;
+    }
+
+    private static Properties loadFile() {
+        Properties properties = fileProperties;
+        if (properties == null) {
+            properties = new Properties();
+            File file = new File(CONFIG_FILE);
+            if (file.isFile()) {
+                try (Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8")) {
+                    properties.load(reader);
+                } catch (IOException e) {
+                    System.out.println("שגיאה בקריאת קובץ ההגדרות: " + e.getMessage());
+                }
+            }
+            fileProperties = properties;
+        }
+        return properties;
+    }
+}
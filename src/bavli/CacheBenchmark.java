@@ -0,0 +1,136 @@
+package bavli;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Replays a page access trace against {@link PageCache} with each eviction policy and prints the hit ratios.
+ * A trace is one page key per line; set {@code bavli.cache.trace=<file>} while using the application to record
+ * one from {@link FileManager#loadPage}. Without a trace file a synthetic study-plus-scan trace is generated.
+ * <pre>
+ * java -cp target/classes bavli.CacheBenchmark [trace-file] [budget, e.g. 4m]
+ * </pre>
+ */
+public class CacheBenchmark {
+
+    /** Setting naming a file that page accesses are appended to. */
+    public static final String TRACE_SETTING = "bavli.cache.trace";
+
+    private static final int DEFAULT_PAGE_CHARS = 6000; // גודל עמוד משוער כשאין קורפוס ארוז
+
+    private static volatile PrintWriter traceWriter; // נכתב תחת CacheBenchmark.class
+    private static volatile boolean traceChecked;
+
+    /** Same as {@link #record(String)} for a packed page key; builds no string when tracing is off. */
+    static void record(long pageKey) {
+        if (traceChecked && traceWriter == null) return;
+        record(PageKey.toString(pageKey));
+    }
+
+    /** Appends a page access to the trace file, if {@code bavli.cache.trace} is set. */
+    static synchronized void record(String key) {
+        if (!traceChecked) {
+            traceChecked = true;
+            String path = AppConfig.get(TRACE_SETTING);
+            if (path != null && !path.isEmpty()) {
+                try {
+                    traceWriter = new PrintWriter(new OutputStreamWriter(new FileOutputStream(path, true), StandardCharsets.UTF_8), true);
+                } catch (IOException e) {
+                    System.out.println("שגיאה בפתיחת קובץ המעקב: " + e.getMessage());
+                }
+            }
+        }
+        if (traceWriter != null) {
+            traceWriter.println(key);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> trace = args.length > 0 && new File(args[0]).isFile()
+                ? Files.readAllLines(new File(args[0]).toPath(), StandardCharsets.UTF_8)
+                : syntheticTrace(new Random(42));
+        Map<String, Integer> pageChars = pageSizes(trace);
+        long workingSet = 0;
+        for (int chars : pageChars.values()) workingSet += CacheManager.weigh("", "") + 2L * chars;
+
+        List<Long> budgets = new ArrayList<>();
+        if (args.length > 1) {
+            budgets.add(AppConfig.parseBytes(args[1]));
+        } else {
+            for (int percent : new int[] {5, 10, 25, 50}) budgets.add(workingSet * percent / 100);
+        }
+
+        System.out.println("גישות: " + trace.size() + ", עמודים שונים: " + pageChars.size()
+                + ", גודל כולל: " + workingSet / 1024 + "KB");
+        System.out.printf("%-12s %-10s %-10s%n", "תקציב", "LRU", "TinyLFU");
+        for (long budget : budgets) {
+            System.out.printf("%-12s %-10s %-10s%n", budget / 1024 + "KB",
+                    percent(replay(trace, pageChars, budget, PageCache.Policy.LRU)),
+                    percent(replay(trace, pageChars, budget, PageCache.Policy.TINY_LFU)));
+        }
+    }
+
+    /** @return hit ratio of the trace replayed through a cache of the given budget and policy */
+    static double replay(List<String> trace, Map<String, Integer> pageChars, long budget, PageCache.Policy policy) {
+        PageCache cache = new PageCache(budget, policy);
+        Map<Integer, String> texts = new HashMap<>(); // טקסט משותף לכל אורך - רק המשקל משנה
+        long hits = 0;
+        for (String key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                int chars = pageChars.getOrDefault(key, DEFAULT_PAGE_CHARS);
+                cache.put(key, texts.computeIfAbsent(chars, c -> new String(new char[c])));
+            }
+        }
+        return trace.isEmpty() ? 0 : (double) hits / trace.size();
+    }
+
+    /** Page lengths from the packed corpus when available, otherwise a stable pseudo-random size per key. */
+    private static Map<String, Integer> pageSizes(List<String> trace) {
+        PackedCorpus pack = PackedCorpus.get();
+        Map<String, Integer> sizes = new HashMap<>();
+        for (String key : trace) {
+            if (sizes.containsKey(key)) continue;
+            String text = pack != null ? pack.read(key) : null;
+            sizes.put(key, text != null ? text.length()
+                                        : DEFAULT_PAGE_CHARS / 2 + Math.floorMod(key.hashCode(), DEFAULT_PAGE_CHARS));
+        }
+        return sizes;
+    }
+
+    /**
+     * Study-plus-scan workload: readers return to a few hundred popular amudim (Zipf-like), interleaved with
+     * one-off sequential sweeps over whole tractates such as an HTML export or a Mishna extraction.
+     */
+    static List<String> syntheticTrace(Random random) {
+        String[] masechtot = {"ברכות", "שבת", "עירובין", "פסחים", "יומא", "סוכה", "ביצה", "ראש השנה",
+                              "תענית", "מגילה", "בבא קמא", "בבא מציעא", "בבא בתרא", "סנהדרין"};
+        List<String> studied = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String masechet = masechtot[random.nextInt(4)]; // הלימוד מרוכז בכמה מסכתות
+            studied.add(masechet + "_" + (2 + random.nextInt(60)) + "_" + (random.nextBoolean() ? "alef" : "bet"));
+        }
+
+        List<String> trace = new ArrayList<>();
+        for (int step = 0; step < 40; step++) {
+            for (int i = 0; i < 1000; i++) {
+                // התפלגות זיף מקורבת - העמודים הראשונים ברשימה פופולריים הרבה יותר
+                int index = (int) Math.min(studied.size() - 1, Math.floor(Math.pow(random.nextDouble(), 3) * studied.size()));
+                trace.add(studied.get(index));
+            }
+            String scanned = masechtot[4 + random.nextInt(masechtot.length - 4)];
+            for (int daf = 2; daf < 120; daf++) { // סריקה של מסכת שלמה
+                trace.add(scanned + "_" + daf + "_alef");
+                trace.add(scanned + "_" + daf + "_bet");
+            }
+        }
+        return trace;
+    }
+
+    private static String percent(double ratio) {
+        return String.format("%.1f%%", ratio * 100);
+    }
+}
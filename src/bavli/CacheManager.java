@@ -1,80 +1,176 @@
 package bavli;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
- * LRU cache for page content (max 100 entries). Used by {@link FileManager#loadPage}.
+ * Page content cache used by {@link FileManager#loadPage}: a static facade over a concurrent {@link PageCache}.
+ * Entries are weighed by size and kept within a byte budget, {@code bavli.cache.maxBytes} (e.g. {@code 256m},
+ * {@code 16m}; default 32m), using W-TinyLFU admission so scans do not evict frequently studied pages.
+ * Pages evicted from this heap tier drop into an off-heap {@link WarmTier} ({@code bavli.cache.warmBytes},
+ * default 64m, 0 disables) and are promoted back on their next access.
+ * Safe to use from any thread; heap tier reads do not take a lock.
  */
 public class CacheManager {
 
-    private static final int MAX_SIZE = 100;
-    private static final Map<String, CacheEntry> cache = new LinkedHashMap<>(MAX_SIZE, 0.75f, true) {
-        
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
-            return size() > MAX_SIZE;
-        }
-    };
-    
-    private static class CacheEntry { // מחלקה פנימית לשמירת מידע נוסף על כל פריט במטמון
-        private final String data;
-        private int hits;
-        private final long creationTime;
-        
-        public CacheEntry(String data) {
-            this.data = data;
-            this.hits = 1;
-            this.creationTime = System.currentTimeMillis();
-        }
-        
-        public String getData() {
-            hits++;
-            return data;
+    /** Setting for the cache budget in bytes; accepts k/m/g suffixes. */
+    public static final String MAX_BYTES_SETTING = "bavli.cache.maxBytes";
+
+    private static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    /** Setting for the eviction policy: {@code tinylfu} (default) or {@code lru}. */
+    public static final String POLICY_SETTING = "bavli.cache.policy";
+
+    private static final PageCache cache = new PageCache(AppConfig.getBytes(MAX_BYTES_SETTING, DEFAULT_MAX_BYTES),
+            "lru".equalsIgnoreCase(AppConfig.get(POLICY_SETTING)) ? PageCache.Policy.LRU : PageCache.Policy.TINY_LFU);
+
+    /** Setting for the off-heap warm tier size in bytes; 0 disables it. */
+    public static final String WARM_BYTES_SETTING = "bavli.cache.warmBytes";
+
+    private static final long DEFAULT_WARM_BYTES = 64L * 1024 * 1024;
+
+    private static final WarmTier warm = new WarmTier(AppConfig.getBytes(WARM_BYTES_SETTING, DEFAULT_WARM_BYTES));
+
+    // מונים לסטטיסטיקות - LongAdder כדי שקריאות מקבילות לא יתחרו על אותו משתנה
+    private static final LongAdder hotHits = new LongAdder();
+    private static final LongAdder warmHits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder loadSuccesses = new LongAdder();
+    private static final LongAdder loadFailures = new LongAdder();
+    private static final LongAdder totalLoadNanos = new LongAdder();
+    private static final LongAdder[] loadHistogram = new LongAdder[48]; // תא i: זמנים עד 2^(i+1) ננו-שניות
+    private static final LongAdder sizeEvictions = new LongAdder();
+    private static final LongAdder rejections = new LongAdder();
+    private static final LongAdder explicitRemovals = new LongAdder();
+    private static final LongAdder pressureShrinks = new LongAdder();
+    private static final LongAdder pressureGrows = new LongAdder();
+    private static long configuredMaxBytes = cache.getMaxBytes(); // מוגן ע"י CacheManager.class
+    private static long pressureLimit = Long.MAX_VALUE; // תקרה זמנית בגלל לחץ זיכרון, מוגן ע"י CacheManager.class
+    private static final LongObjectMap<String> pageKeyNames = new LongObjectMap<>(); // מפתח ארוז -> מפתח המחרוזת במטמון
+    private static final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>(); // טעינות שרצות כעת
+
+    static {
+        for (int i = 0; i < loadHistogram.length; i++) loadHistogram[i] = new LongAdder();
+        cache.setEvictionListener((key, value, cause) -> {
+            (cause == PageCache.EvictionCause.REJECTED ? rejections : sizeEvictions).increment();
+            if (warm.isEnabled()) {
+                warm.put(key, value); // עמודים שיוצאים מהזיכרון עוברים לשכבה החמה
+            }
+        });
+        registerMBean();
+        MemoryPressureMonitor.start();
+    }
+
+    /** Returns cached value for key, or null if absent; a warm tier hit is promoted back to the heap tier. */
+    public static String get(String key) {
+        String value = cache.get(key);
+        if (value != null) {
+            hotHits.increment();
+            return value;
         }
-        
-        public int getHits() {
-            return hits;
+        value = warm.take(key);
+        if (value != null) {
+            warmHits.increment();
+            cache.put(key, value); // קידום חזרה לשכבה שבזיכרון
+            return value;
         }
-        
-        public long getCreationTime() {
-            return creationTime;
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the cached value for key, loading it with {@code loader} on a miss. Concurrent callers missing
+     * the same key share one in-flight load and all receive its result; a null result is returned but not cached.
+     * A {@link #remove} during the load discards its result instead of caching a stale value.
+     */
+    public static String get(String key, Function<String, String> loader) {
+        String value = get(key);
+        return value != null ? value : load(key, loader);
+    }
+
+    /**
+     * Page lookup by {@link PageKey}: same as {@link #get(String, Function)} on the page's string key, which is
+     * built once per amud and kept in a {@link LongObjectMap}, so a hit allocates nothing.
+     */
+    public static String get(long pageKey, LongFunction<String> loader) {
+        String key = cacheKey(pageKey);
+        String value = get(key);
+        return value != null ? value : load(key, k -> loader.apply(pageKey));
+    }
+
+    /** @return the string cache key ({@code masechet_daf_alef|bet}) of a packed page key */
+    static String cacheKey(long pageKey) {
+        return pageKeyNames.computeIfAbsent(pageKey, PageKey::toString);
+    }
+
+    /** Single-flight load after a miss. */
+    private static String load(String key, Function<String, String> loader) {
+        CompletableFuture<String> load = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, load);
+        if (running != null) { // טעינה של אותו מפתח כבר רצה - ממתינים לתוצאה שלה
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
         }
-        
-        public long getAge() {
-            return System.currentTimeMillis() - creationTime;
+        try {
+            String value = cache.get(key); // ייתכן שטעינה קודמת הסתיימה בין הבדיקה לרישום
+            if (value == null) {
+                value = loader.apply(key);
+                if (value != null && inFlight.get(key) == load) { // לא בוטל ע"י remove בזמן הטעינה
+                    cache.put(key, value);
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
         }
     }
 
-    /** Returns cached value for key, or null if absent. */
-    public static String get(String key) {
-        CacheEntry entry = cache.get(key);
-        return entry != null ? entry.getData() : null;
+    /** Puts a key-value pair into the cache, evicting least recently used entries to stay within the budget. */
+    public static void put(String key, String value) {
+        cache.put(key, value);
     }
 
-    /** Puts a key-value pair into the cache. */
-    public static void put(String key, String value) {
-        cache.put(key, new CacheEntry(value));
+    /** Approximate heap cost of an entry: UTF-16 chars of key and value plus fixed object overhead. */
+    static long weigh(String key, String value) {
+        return PageCache.weigh(key, value);
     }
 
     /** Returns true if the key is in the cache. */
     public static boolean contains(String key) {
-        return cache.containsKey(key);
+        return cache.contains(key) || warm.contains(key);
     }
     
     /** Removes the entry for the given key. */
     public static void remove(String key) {
         if (key != null) {
+            if (cache.contains(key) || warm.contains(key)) explicitRemovals.increment();
+            inFlight.remove(key); // טעינה שרצה עכשיו לא תשמור ערך ישן
             cache.remove(key);
+            warm.remove(key);
         }
     }
     
     /** Clears all cache entries. */
     public static void clear() {
         cache.clear();
+        warm.clear();
     }
     
     /** Current number of entries in the cache. */
@@ -82,24 +178,152 @@ public class CacheManager {
         return cache.size();
     }
 
-    /** Maximum cache capacity. */
-    public static int getMaxSize() {
-        return MAX_SIZE;
+    /** Total weight of the cached entries, in bytes. */
+    public static long getWeightedSize() {
+        return cache.weightedSize();
+    }
+
+    /** Configured cache budget in bytes. */
+    public static synchronized long getMaxBytes() {
+        return configuredMaxBytes;
+    }
+
+    /** Budget in force now: the configured one, or less while {@link MemoryPressureMonitor} has shrunk it. */
+    public static long getEffectiveMaxBytes() {
+        return cache.getMaxBytes();
+    }
+
+    /** Changes the budget at runtime, evicting immediately if the cache is over the new budget. */
+    public static synchronized void setMaxBytes(long bytes) {
+        configuredMaxBytes = Math.max(0, bytes);
+        cache.setMaxBytes(Math.min(configuredMaxBytes, pressureLimit));
+    }
+
+    /** Caps the budget because of heap pressure; a limit at or above the configured budget lifts the cap. */
+    static synchronized void setPressureLimit(long limit) {
+        long before = cache.getMaxBytes();
+        pressureLimit = limit >= configuredMaxBytes ? Long.MAX_VALUE : limit;
+        long after = Math.min(configuredMaxBytes, pressureLimit);
+        if (after == before) return;
+        (after < before ? pressureShrinks : pressureGrows).increment();
+        cache.setMaxBytes(after);
+        System.out.println((after < before ? "לחץ זיכרון - תקציב המטמון צומצם ל-" : "לחץ הזיכרון פחת - תקציב המטמון הורחב ל-")
+                + after / 1024 + "KB");
+    }
+    
+    /** Number of pages in the off-heap warm tier. */
+    public static int getWarmSize() {
+        return warm.size();
+    }
+
+    /** UTF-8 bytes stored in the warm tier. */
+    public static long getWarmUsedBytes() {
+        return warm.usedBytes();
+    }
+
+    /** Warm tier capacity in bytes (0 if disabled). */
+    public static long getWarmCapacity() {
+        return warm.getCapacity();
+    }
+
+    /** Records one load from storage after a miss; called by {@link FileManager}. */
+    static void recordLoad(long nanos, boolean found) {
+        (found ? loadSuccesses : loadFailures).increment();
+        totalLoadNanos.add(nanos);
+        int bucket = 63 - Long.numberOfLeadingZeros(Math.max(1, nanos));
+        loadHistogram[Math.min(bucket, loadHistogram.length - 1)].increment();
+    }
+
+    /** Takes a snapshot of the cache statistics since startup. */
+    public static CacheStats stats() {
+        long[] histogram = new long[loadHistogram.length];
+        long histogramTotal = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = loadHistogram[i].sum();
+            histogramTotal += histogram[i];
+        }
+        return new CacheStats(hotHits.sum(), warmHits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(),
+                totalLoadNanos.sum(), percentile(histogram, histogramTotal, 0.50), percentile(histogram, histogramTotal, 0.90),
+                percentile(histogram, histogramTotal, 0.99), sizeEvictions.sum(), rejections.sum(),
+                explicitRemovals.sum(), warm.overwrittenCount(), pressureShrinks.sum(), pressureGrows.sum());
+    }
+
+    private static long percentile(long[] histogram, long total, double fraction) {
+        if (total == 0) return 0;
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= target) return 1L << (i + 1);
+        }
+        return 1L << histogram.length;
+    }
+
+    /** Registers the {@link CacheStatsMXBean} with the platform MBean server. */
+    private static void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("bavli:type=PageCache");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new JmxView(), name);
+            }
+        } catch (Exception | LinkageError e) { // JMX לא זמין - המטמון עובד גם בלעדיו
+            System.out.println("לא ניתן לרשום את סטטיסטיקות המטמון ב-JMX: " + e.getMessage());
+        }
+    }
+
+    /** JMX adapter over {@link #stats()} and the cache settings. */
+    private static class JmxView implements CacheStatsMXBean {
+        public long getRequestCount() { return stats().requestCount(); }
+        public long getHitCount() { return stats().hitCount(); }
+        public long getWarmHitCount() { return stats().warmHitCount(); }
+        public long getMissCount() { return stats().missCount(); }
+        public double getHitRatio() { return stats().hitRatio(); }
+        public long getLoadCount() { return stats().loadCount(); }
+        public long getLoadFailureCount() { return stats().loadFailureCount(); }
+        public double getAverageLoadMillis() { return stats().averageLoadMillis(); }
+        public long getLoadP50Micros() { return stats().loadP50Nanos() / 1000; }
+        public long getLoadP90Micros() { return stats().loadP90Nanos() / 1000; }
+        public long getLoadP99Micros() { return stats().loadP99Nanos() / 1000; }
+        public long getSizeEvictionCount() { return stats().sizeEvictionCount(); }
+        public long getRejectedCount() { return stats().rejectedCount(); }
+        public long getExplicitRemovalCount() { return stats().explicitRemovalCount(); }
+        public long getWarmOverwriteCount() { return stats().warmOverwriteCount(); }
+        public long getPressureShrinkCount() { return stats().pressureShrinkCount(); }
+        public long getPressureGrowCount() { return stats().pressureGrowCount(); }
+        public long getEffectiveMaxBytes() { return CacheManager.getEffectiveMaxBytes(); }
+        public int getSize() { return CacheManager.getSize(); }
+        public long getWeightedSize() { return CacheManager.getWeightedSize(); }
+        public long getMaxBytes() { return CacheManager.getMaxBytes(); }
+        public void setMaxBytes(long bytes) { CacheManager.setMaxBytes(bytes); }
+        public int getWarmSize() { return CacheManager.getWarmSize(); }
+        public void clear() { CacheManager.clear(); }
+    }
+
+    /** Eviction policy in use. */
+    public static PageCache.Policy getPolicy() {
+        return cache.getPolicy();
+    }
+
+    /** @return a one-line description of the cache structure and eviction policy in use, for the cache info displays */
+    public static String getPolicyDescription() {
+        if (getPolicy() == PageCache.Policy.TINY_LFU) {
+            return "המטמון מנוהל כ-ConcurrentHashMap עם מדיניות W-TinyLFU לפי משקל (חלון LRU קטן; עמוד נכנס לאזור הראשי רק אם"
+                   + " נגשו אליו יותר מאשר לעמוד שהיה יורד במקומו) - הגדרה " + POLICY_SETTING;
+        }
+        return "המטמון מנוהל כ-ConcurrentHashMap עם מדיניות LRU לפי משקל (העמוד שנגש אליו הכי פחות לאחרונה יורד) - הגדרה "
+               + POLICY_SETTING;
     }
     
     /** Returns map of cache key to hit count. */
     public static Map<String, Integer> getHitsStatistics() {
-        Map<String, Integer> stats = new HashMap<>();
-        for (Map.Entry<String, CacheEntry> entry : cache.entrySet()) {
-            stats.put(entry.getKey(), entry.getValue().getHits());
-        }
-        return stats;
+        return cache.hitsSnapshot();
     }
     
     /** Returns up to {@code count} keys with highest hit count. */
     public static List<String> getPopularItems(int count) {
-        List<Map.Entry<String, CacheEntry>> sorted = new ArrayList<>(cache.entrySet());
-        sorted.sort((e1, e2) -> Integer.compare(e2.getValue().getHits(), e1.getValue().getHits()));
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(cache.hitsSnapshot().entrySet());
+        sorted.sort((e1, e2) -> Integer.compare(e2.getValue(), e1.getValue()));
         
         List<String> result = new ArrayList<>();
         int limit = Math.min(count, sorted.size());
@@ -0,0 +1,159 @@
+package bavli;
+
+/**
+ * Immutable snapshot of page cache statistics, taken by {@link CacheManager#stats()}. Each counter is read once
+ * and the totals and ratios are derived from those values, so a snapshot is always self-consistent
+ * (requests = hits + warm hits + misses) even while other threads keep using the cache.
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long warmHitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadNanos;
+    private final long loadP50Nanos;
+    private final long loadP90Nanos;
+    private final long loadP99Nanos;
+    private final long sizeEvictionCount;
+    private final long rejectedCount;
+    private final long explicitRemovalCount;
+    private final long warmOverwriteCount;
+    private final long pressureShrinkCount;
+    private final long pressureGrowCount;
+
+    CacheStats(long hitCount, long warmHitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+               long totalLoadNanos, long loadP50Nanos, long loadP90Nanos, long loadP99Nanos,
+               long sizeEvictionCount, long rejectedCount, long explicitRemovalCount, long warmOverwriteCount,
+               long pressureShrinkCount, long pressureGrowCount) {
+        this.hitCount = hitCount;
+        this.warmHitCount = warmHitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadNanos = totalLoadNanos;
+        this.loadP50Nanos = loadP50Nanos;
+        this.loadP90Nanos = loadP90Nanos;
+        this.loadP99Nanos = loadP99Nanos;
+        this.sizeEvictionCount = sizeEvictionCount;
+        this.rejectedCount = rejectedCount;
+        this.explicitRemovalCount = explicitRemovalCount;
+        this.warmOverwriteCount = warmOverwriteCount;
+        this.pressureShrinkCount = pressureShrinkCount;
+        this.pressureGrowCount = pressureGrowCount;
+    }
+
+    /** Lookups: hits in either tier plus misses. */
+    public long requestCount() {
+        return hitCount + warmHitCount + missCount;
+    }
+
+    /** Lookups answered by the on-heap tier. */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /** Lookups answered by the off-heap warm tier. */
+    public long warmHitCount() {
+        return warmHitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    /** Fraction of lookups answered by either tier; 1.0 when there were no lookups. */
+    public double hitRatio() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) (hitCount + warmHitCount) / requests;
+    }
+
+    /** Page loads from storage after a miss (successful and failed). */
+    public long loadCount() {
+        return loadSuccessCount + loadFailureCount;
+    }
+
+    /** Loads that found no page (missing file or read error). */
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long totalLoadNanos() {
+        return totalLoadNanos;
+    }
+
+    public double averageLoadMillis() {
+        long loads = loadCount();
+        return loads == 0 ? 0 : totalLoadNanos / 1e6 / loads;
+    }
+
+    /** Load time percentiles (upper bound of the power-of-two histogram bucket), in nanoseconds. */
+    public long loadP50Nanos() {
+        return loadP50Nanos;
+    }
+
+    public long loadP90Nanos() {
+        return loadP90Nanos;
+    }
+
+    public long loadP99Nanos() {
+        return loadP99Nanos;
+    }
+
+    /** Entries dropped from the heap tier to make room. */
+    public long sizeEvictionCount() {
+        return sizeEvictionCount;
+    }
+
+    /** New entries TinyLFU declined to admit into the heap tier. */
+    public long rejectedCount() {
+        return rejectedCount;
+    }
+
+    /** Entries invalidated by {@link CacheManager#remove} (e.g. after an incremental re-split). */
+    public long explicitRemovalCount() {
+        return explicitRemovalCount;
+    }
+
+    /** Warm tier pages overwritten by newer evictions. */
+    public long warmOverwriteCount() {
+        return warmOverwriteCount;
+    }
+
+    /** Times heap pressure shrank the cache budget. */
+    public long pressureShrinkCount() {
+        return pressureShrinkCount;
+    }
+
+    /** Times the budget grew back after heap pressure cleared. */
+    public long pressureGrowCount() {
+        return pressureGrowCount;
+    }
+
+    /** Multi-line Hebrew report for the console and GUI cache screens. */
+    public String toDisplayString() {
+        return "בקשות: " + requestCount() + " | פגיעות: " + hitCount + " | פגיעות בשכבה החמה: " + warmHitCount
+                + " | החטאות: " + missCount + String.format(" | יחס פגיעה: %.1f%%", hitRatio() * 100) + "\n"
+                + "טעינות מהדיסק: " + loadCount() + " (נכשלו " + loadFailureCount + ")"
+                + String.format(" | זמן ממוצע: %.2f מ\"ש", averageLoadMillis())
+                + " | p50/p90/p99: " + micros(loadP50Nanos) + "/" + micros(loadP90Nanos) + "/" + micros(loadP99Nanos) + " מיקרו-שניות\n"
+                + "פינויים: לפי גודל " + sizeEvictionCount + ", דחיית קבלה " + rejectedCount
+                + ", ביטול ידני " + explicitRemovalCount + ", נדרסו בשכבה החמה " + warmOverwriteCount + "\n"
+                + "לחץ זיכרון: צמצומים " + pressureShrinkCount + ", הרחבות " + pressureGrowCount;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{requests=" + requestCount() + ", hits=" + hitCount + ", warmHits=" + warmHitCount
+                + ", misses=" + missCount + ", loads=" + loadCount() + ", loadFailures=" + loadFailureCount
+                + ", totalLoadNanos=" + totalLoadNanos + ", sizeEvictions=" + sizeEvictionCount
+                + ", rejected=" + rejectedCount + ", explicitRemovals=" + explicitRemovalCount
+                + ", warmOverwrites=" + warmOverwriteCount + ", pressureShrinks=" + pressureShrinkCount
+                + ", pressureGrows=" + pressureGrowCount + "}";
+    }
+}
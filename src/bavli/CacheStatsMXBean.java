@@ -0,0 +1,58 @@
+package bavli;
+
+/**
+ * JMX view of the page cache, registered as {@code bavli:type=PageCache}. Every attribute is read from a fresh
+ * {@link CacheStats} snapshot.
+ */
+public interface CacheStatsMXBean {
+
+    long getRequestCount();
+
+    long getHitCount();
+
+    long getWarmHitCount();
+
+    long getMissCount();
+
+    double getHitRatio();
+
+    long getLoadCount();
+
+    long getLoadFailureCount();
+
+    double getAverageLoadMillis();
+
+    long getLoadP50Micros();
+
+    long getLoadP90Micros();
+
+    long getLoadP99Micros();
+
+    long getSizeEvictionCount();
+
+    long getRejectedCount();
+
+    long getExplicitRemovalCount();
+
+    long getWarmOverwriteCount();
+
+    long getPressureShrinkCount();
+
+    long getPressureGrowCount();
+
+    int getSize();
+
+    long getWeightedSize();
+
+    long getMaxBytes();
+
+    void setMaxBytes(long bytes);
+
+    /** Budget in force now, lower than {@link #getMaxBytes()} while heap pressure has shrunk the cache. */
+    long getEffectiveMaxBytes();
+
+    int getWarmSize();
+
+    /** Clears both cache tiers. */
+    void clear();
+}
@@ -0,0 +1,97 @@
+package bavli;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Warm start for the page cache across restarts. On shutdown the hottest cached keys, ranked by their hit
+ * counts, are written to {@code bavli.cache.hotKeysFile} (default {@code cache.hotkeys}); on startup they are
+ * read back into {@link CacheManager} on one background thread, hottest first, until {@code bavli.cache.warmKeys}
+ * pages (default 500) or {@code bavli.cache.warmStartBytes} of page text (default half the cache budget) have
+ * been loaded. {@code bavli.cache.warmStart=false} disables both.
+ */
+public class CacheWarmer {
+
+    public static final String HOT_KEYS_SETTING = "bavli.cache.hotKeysFile";
+    public static final String ENABLED_SETTING = "bavli.cache.warmStart";
+    public static final String MAX_KEYS_SETTING = "bavli.cache.warmKeys";
+    public static final String MAX_BYTES_SETTING = "bavli.cache.warmStartBytes";
+
+    private static boolean started; // מוגן ע"י CacheWarmer.class
+
+    /** Starts the background warm-up and registers the shutdown hook that saves the hot keys; runs once. */
+    public static synchronized void start() {
+        if (started || !AppConfig.getBoolean(ENABLED_SETTING, true)) return;
+        started = true;
+        String path = AppConfig.get(HOT_KEYS_SETTING);
+        File file = new File(path == null || path.isEmpty() ? "cache.hotkeys" : path);
+        int maxKeys = AppConfig.getInt(MAX_KEYS_SETTING, 500);
+        long maxBytes = AppConfig.getBytes(MAX_BYTES_SETTING, CacheManager.getMaxBytes() / 2);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> saveHotKeys(file, maxKeys), "bavli-cache-save"));
+        if (!file.isFile()) return;
+        Thread loader = new Thread(() -> {
+            int loaded = warmUp(file, maxKeys, maxBytes);
+            if (loaded > 0) System.out.println("המטמון חומם עם " + loaded + " עמודים מההפעלה הקודמת");
+        }, "bavli-cache-warmup");
+        loader.setDaemon(true); // לא מעכב את סגירת התוכנית
+        loader.setPriority(Thread.MIN_PRIORITY); // עדיפות לקריאות של המשתמש
+        loader.start();
+    }
+
+    /**
+     * Writes up to {@code maxKeys} cached keys, most hit first, one per line.
+     * @return true if the file was written
+     */
+    static boolean saveHotKeys(File file, int maxKeys) {
+        List<String> keys = CacheManager.getPopularItems(maxKeys);
+        if (keys.isEmpty()) return false; // לא דורסים רשימה קודמת בהרצה שלא קראה דבר
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            Files.write(temp.toPath(), keys, StandardCharsets.UTF_8);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING); // החלפה בבת אחת
+            return true;
+        } catch (IOException e) {
+            System.out.println("שגיאה בשמירת רשימת העמודים החמים: " + e.getMessage());
+            temp.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Loads the keys listed in the file into the cache in order, stopping after {@code maxKeys} pages or once
+     * {@code maxBytes} of page text (UTF-16) were read; keys already cached or no longer on disk are skipped.
+     * @return number of pages loaded
+     */
+    static int warmUp(File file, int maxKeys, long maxBytes) {
+        List<String> keys;
+        try {
+            keys = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("שגיאה בקריאת רשימת העמודים החמים: " + e.getMessage());
+            return 0;
+        }
+        int loaded = 0;
+        long bytes = 0;
+        for (String key : keys) {
+            if (loaded >= maxKeys || bytes >= maxBytes) break;
+            int amudSeparator = key.lastIndexOf('_');
+            int dafSeparator = amudSeparator > 0 ? key.lastIndexOf('_', amudSeparator - 1) : -1;
+            if (dafSeparator <= 0 || CacheManager.contains(key)) continue;
+            try {
+                int daf = Integer.parseInt(key.substring(dafSeparator + 1, amudSeparator));
+                String text = FileManager.readPage(key.substring(0, dafSeparator), daf, key.substring(amudSeparator + 1));
+                if (!text.isEmpty()) {
+                    loaded++;
+                    bytes += 2L * text.length();
+                }
+            } catch (NumberFormatException e) {
+                // שורה פגומה - מדלגים
+            }
+        }
+        return loaded;
+    }
+}
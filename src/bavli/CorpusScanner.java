@@ -0,0 +1,275 @@
+package bavli;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * One traversal of the corpus ({@code pages.pack} if present, otherwise {@code pages/}) that feeds every
+ * requested {@link IndexBuilder} at once: each amud is read at most once however many indexes are built, and
+ * not at all when no builder needs the text. Tractates are scanned in parallel on one shared fork/join pool
+ * ({@code bavli.index.threads}, default one thread per core), each split by daf range; results are handed to
+ * the builders tractate by tractate in listing order, with console messages in the order a sequential scan
+ * would print them.
+ */
+class CorpusScanner {
+
+    private static final int LEAF_DAFS = 8; // מתחת לזה סורקים ישירות
+
+    private static ForkJoinPool pool; // משותף לכל הסריקות; נוצר מחדש רק כשמספר התהליכונים משתנה
+    private static int poolThreads;
+
+    /** An index filled from the scan, e.g. the daf list or the Mishna map; {@code T} is its per-daf entry. */
+    interface IndexBuilder<T> {
+
+        /** Whether the builder needs the amud texts; if no builder does, the scan only lists the dafs. */
+        boolean needsText();
+
+        /**
+         * Called on a worker thread for each daf. {@code amudim} holds the daf's amudim (empty if no builder
+         * needs the text); messages go to {@code log}.
+         * @return the daf's entry, or null if the daf adds nothing to this index
+         */
+        T scanDaf(String masechet, int daf, List<Amud> amudim, List<String> log);
+
+        /** Called on the scanning thread, tractate by tractate in listing order, with the entries in daf listing order. */
+        void finishMasechet(String masechet, Map<Integer, T> entries);
+    }
+
+    /** Text of one amud as read by the scan. */
+    static final class Amud {
+        final String name; // "alef"/"bet", or the file name of anything else found in a daf directory
+        final String text;
+
+        Amud(String name, String text) {
+            this.name = name;
+            this.text = text;
+        }
+
+        /** @return 0 for alef, 1 for bet, -1 for anything else */
+        int index() {
+            return name.equals("alef") ? 0 : name.equals("bet") ? 1 : -1;
+        }
+    }
+
+    /** One daf to scan: its directory, or its amudim in the packed corpus. */
+    private static final class DafSource {
+        final int daf;
+        final File dir;
+        final PackedCorpus pack;
+        final List<PackedCorpus.Entry> entries;
+
+        DafSource(int daf, File dir, PackedCorpus pack, List<PackedCorpus.Entry> entries) {
+            this.daf = daf;
+            this.dir = dir;
+            this.pack = pack;
+            this.entries = entries;
+        }
+    }
+
+    /** Entries of a range of dafs, one map per builder, with the messages of the range. */
+    private static final class ScanResult {
+        final List<Map<Integer, Object>> entries = new ArrayList<>();
+        final List<String> log = new ArrayList<>();
+
+        ScanResult(int builders) {
+            for (int i = 0; i < builders; i++) entries.add(new LinkedHashMap<>());
+        }
+    }
+
+    /**
+     * Scans every tractate in the corpus.
+     * @return false if there is neither a packed corpus nor a {@code pages/} directory
+     */
+    static boolean scanAll(List<IndexBuilder<?>> builders) {
+        List<String> masechtot = masechtot();
+        if (masechtot == null) return false;
+        scan(masechtot, builders);
+        return true;
+    }
+
+    /**
+     * Lists the tractates of the corpus without reading any daf: the packed corpus's tractates if there is one,
+     * then the directories under {@code pages/} that it does not hold (split after it was packed).
+     * @return the tractate names in listing order, or null if there is neither
+     */
+    static List<String> masechtot() {
+        PackedCorpus pack = PackedCorpus.get();
+        File baseDir = AppConfig.dataFile("pages");
+        if (pack == null && !baseDir.exists()) return null;
+
+        List<String> masechtot = new ArrayList<>();
+        if (pack != null) { // with a packed corpus the daf lists come from its offset table
+            masechtot.addAll(pack.getMasechtot());
+        }
+        File[] masechetDirs = baseDir.listFiles();
+        if (masechetDirs == null) return masechtot;
+        for (File masechetDir : masechetDirs) {
+            if (masechetDir.isDirectory() && !masechtot.contains(masechetDir.getName())) {
+                masechtot.add(masechetDir.getName()); // מסכת שאינה בקובץ הארוז נקראת מהתיקייה
+            }
+        }
+        return masechtot;
+    }
+
+    /** @return whether the tractate is in the packed corpus or has a directory under {@code pages/} */
+    static boolean contains(String masechet) {
+        PackedCorpus pack = PackedCorpus.get();
+        return (pack != null && !pack.getEntries(masechet).isEmpty()) || new File(AppConfig.dataFile("pages"), masechet).isDirectory();
+    }
+
+    /** Scans the given tractates, each from the packed corpus if it holds the tractate, otherwise from its directory. */
+    static void scan(List<String> masechtot, List<IndexBuilder<?>> builders) {
+        if (masechtot.isEmpty() || builders.isEmpty()) return;
+        boolean needsText = false;
+        for (IndexBuilder<?> builder : builders) needsText |= builder.needsText();
+
+        PackedCorpus pack = PackedCorpus.get();
+        ForkJoinPool pool = pool();
+        List<ScanTask> tasks = new ArrayList<>();
+        for (String masechet : masechtot) {
+            List<DafSource> dafs = pack != null && !pack.getEntries(masechet).isEmpty()
+                                   ? dafSources(pack, masechet) : dafSources(new File(AppConfig.dataFile("pages"), masechet));
+            tasks.add((ScanTask) pool.submit(new ScanTask(masechet, dafs, builders, needsText)));
+        }
+        // הסריקה במקביל; הפלט והעברת התוצאות לפי הסדר, כמו בסריקה רציפה
+        for (int i = 0; i < masechtot.size(); i++) {
+            if (needsText) System.out.println("מעבד מסכת: " + masechtot.get(i));
+            ScanResult result = tasks.get(i).join();
+            result.log.forEach(System.out::println);
+            for (int b = 0; b < builders.size(); b++) {
+                finish(builders.get(b), masechtot.get(i), result.entries.get(b));
+            }
+        }
+    }
+
+    /**
+     * The pool shared by all scans, sized by {@code bavli.index.threads}. Its workers are daemon threads, so it
+     * is never shut down; when the setting changes a new pool replaces it and the old one finishes its tasks.
+     */
+    private static synchronized ForkJoinPool pool() {
+        int threads = Math.max(1, AppConfig.getInt("bavli.index.threads", Runtime.getRuntime().availableProcessors()));
+        if (pool == null || poolThreads != threads) {
+            if (pool != null) pool.shutdown();
+            pool = new ForkJoinPool(threads);
+            poolThreads = threads;
+        }
+        return pool;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void finish(IndexBuilder<T> builder, String masechet, Map<Integer, Object> entries) {
+        builder.finishMasechet(masechet, (Map<Integer, T>) (Map<Integer, ?>) entries);
+    }
+
+    /** The dafs of a packed tractate; entries are sorted by daf, so alef and bet are adjacent. */
+    private static List<DafSource> dafSources(PackedCorpus pack, String masechet) {
+        List<DafSource> dafs = new ArrayList<>();
+        List<PackedCorpus.Entry> entries = pack.getEntries(masechet);
+        int start = 0;
+        for (int i = 1; i <= entries.size(); i++) {
+            if (i == entries.size() || entries.get(i).getDaf() != entries.get(start).getDaf()) {
+                dafs.add(new DafSource(entries.get(start).getDaf(), null, pack, entries.subList(start, i)));
+                start = i;
+            }
+        }
+        return dafs;
+    }
+
+    /** The daf directories of a tractate directory, in listing order; empty if the directory is missing. */
+    private static List<DafSource> dafSources(File masechetDir) {
+        List<DafSource> dafs = new ArrayList<>();
+        File[] dafDirs = masechetDir.listFiles();
+        if (dafDirs == null) return dafs;
+        for (File dafDir : dafDirs) {
+            if (dafDir.isDirectory()) dafs.add(new DafSource(-1, dafDir, null, null));
+        }
+        return dafs;
+    }
+
+    /** Scans a range of a tractate's dafs, split in halves while large. */
+    private static final class ScanTask extends RecursiveTask<ScanResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final String masechet;
+        private final List<DafSource> dafs;
+        private final List<IndexBuilder<?>> builders;
+        private final boolean needsText;
+
+        ScanTask(String masechet, List<DafSource> dafs, List<IndexBuilder<?>> builders, boolean needsText) {
+            this.masechet = masechet;
+            this.dafs = dafs;
+            this.builders = builders;
+            this.needsText = needsText;
+        }
+
+        @Override
+        protected ScanResult compute() {
+            if (dafs.size() <= LEAF_DAFS) {
+                ScanResult result = new ScanResult(builders.size());
+                for (DafSource source : dafs) {
+                    scanDaf(source, result);
+                }
+                return result;
+            }
+            int middle = dafs.size() / 2;
+            ScanTask left = new ScanTask(masechet, dafs.subList(0, middle), builders, needsText);
+            left.fork();
+            ScanResult right = new ScanTask(masechet, dafs.subList(middle, dafs.size()), builders, needsText).compute();
+            ScanResult result = left.join();
+            for (int b = 0; b < builders.size(); b++) {
+                result.entries.get(b).putAll(right.entries.get(b)); // הימני אחרון - דף כפול נדרס כמו בסריקה הרציפה
+            }
+            result.log.addAll(right.log);
+            return result;
+        }
+
+        private void scanDaf(DafSource source, ScanResult result) {
+            int daf = source.daf;
+            List<Amud> amudim = new ArrayList<>(2);
+            if (source.entries != null) {
+                if (needsText) {
+                    for (PackedCorpus.Entry entry : source.entries) {
+                        String text = source.pack.read(entry);
+                        if (text != null) amudim.add(new Amud(entry.getAmudName(), text)); // null - העמוד נמחק
+                    }
+                }
+            } else {
+                try {
+                    daf = Integer.parseInt(source.dir.getName());
+                } catch (NumberFormatException e) {
+                    result.log.add("דף לא חוקי: " + source.dir.getName());
+                    return;
+                }
+                File[] amudFiles = needsText ? source.dir.listFiles() : null;
+                if (amudFiles != null) {
+                    for (File amudFile : amudFiles) {
+                        if (!amudFile.isFile()) continue;
+                        try {
+                            amudim.add(new Amud(PageCodec.amudNameOf(amudFile), readAll(amudFile))); // קובץ רגיל או דחוס
+                        } catch (IOException e) {
+                            result.log.add("שגיאה בקריאת קובץ: " + amudFile.getPath() + " - " + e.getMessage());
+                        }
+                    }
+                }
+            }
+            for (int b = 0; b < builders.size(); b++) {
+                Object entry = builders.get(b).scanDaf(masechet, daf, amudim, result.log);
+                if (entry != null) result.entries.get(b).put(daf, entry);
+            }
+        }
+    }
+
+    private static String readAll(File amudFile) throws IOException {
+        try (BufferedReader reader = PageCodec.openAmud(amudFile)) {
+            StringBuilder text = new StringBuilder((int) Math.min(amudFile.length(), 1 << 20));
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                text.append(buffer, 0, read);
+            }
+            return text.toString();
+        }
+    }
+}
@@ -2,294 +2,579 @@ package bavli;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Index of tractates (מסכתות) and Mishnayot — maps tractate names to page numbers
- * and builds a per-tractate, per-page Mishna index. Not thread-safe; single-threaded use.
+ * and builds a per-tractate, per-page Mishna index. Both are keyed by {@link TractateIds} ID.
+ * Indexes are loaded lazily, per tractate: the first lookup that touches a tractate takes its part from the
+ * {@link IndexSnapshot} or scans just that tractate, under a lock of its own, so other tractates stay unloaded
+ * and lookups of loaded ones never wait. {@link #loadAllIndexes} still loads everything up front, scanning all
+ * the tractates the snapshot lacks together. The corpus fingerprint is taken once per process (again only after
+ * the corpus is rewritten), and tractates loaded by lookups are written to the snapshot once, at exit.
+ * Lookups may run while {@link #reindexMasechtot} replaces a tractate's entries.
  */
 public class DataIndex {
-    static final Map <String, List <Integer>> masechtotIndex = new HashMap<>();
-    static final Map <String, Map <Integer, PageInfo>> mishnaIndex = new HashMap<>();
+    static final LongObjectMap<int[]> masechtotIndex = new LongObjectMap<>(); // מזהה מסכת -> דפים ממוינים
+    static final LongObjectMap<MishnaPages> mishnaIndex = new LongObjectMap<>(); // מזהה מסכת -> מידע ארוז לכל דף
+    static final LongObjectMap<PerekIndex> perekIndex = new LongObjectMap<>(); // מזהה מסכת -> גבולות הפרקים
+    private static final LongObjectMap<ReentrantLock> loadLocks = new LongObjectMap<>(); // מזהה מסכת -> מנעול הטעינה שלה
 
-    /** Loads tractate index from the {@code pages/} directory into memory. */
+    private static final Object snapshotLock = new Object();
+    private static long snapshotFingerprint; // נלקח פעם אחת, לפני כל בנייה; 0 - עוד לא נלקח
+    private static IndexSnapshot.Contents snapshot; // התמונה השמורה שנקראה, null עד הקריאה הראשונה
+    private static boolean snapshotDirty; // נטענו מסכתות שעוד לא נשמרו
+    private static boolean saveHookAdded;
+
+    /** Fills {@link #masechtotIndex}: the sorted dafs of each tractate. Lists directories only, reads no text. */
+    private static final CorpusScanner.IndexBuilder<Boolean> DAF_LIST = new CorpusScanner.IndexBuilder<Boolean>() {
+        @Override
+        public boolean needsText() {
+            return false;
+        }
+
+        @Override
+        public Boolean scanDaf(String masechet, int daf, List<CorpusScanner.Amud> amudim, List<String> log) {
+            return Boolean.TRUE;
+        }
+
+        @Override
+        public void finishMasechet(String masechet, Map<Integer, Boolean> entries) {
+            int[] dafs = new int[entries.size()];
+            int count = 0;
+            for (int daf : entries.keySet()) dafs[count++] = daf;
+            Arrays.sort(dafs); // binary search
+            masechtotIndex.put(TractateIds.id(masechet), dafs);
+        }
+    };
+
+    /** Fills {@link #mishnaIndex}: Mishna/chapter info of each daf that has any. */
+    private static final CorpusScanner.IndexBuilder<PageInfo> MISHNA = new CorpusScanner.IndexBuilder<PageInfo>() {
+        @Override
+        public boolean needsText() {
+            return true;
+        }
+
+        @Override
+        public PageInfo scanDaf(String masechet, int daf, List<CorpusScanner.Amud> amudim, List<String> log) {
+            // שלב ראשון: מציאת מידע על פרקים ומשניות
+            PageInfo info = new PageInfo(false, -1);
+            for (CorpusScanner.Amud amud : amudim) {
+                try (BufferedReader reader = new BufferedReader(new StringReader(amud.text))) {
+                    scanAmudLines(reader, info, daf, amud.index(), masechet, log);
+                } catch (IOException e) {
+                    log.add("שגיאה בקריאת עמוד: " + masechet + " " + daf + " - " + e.getMessage());
+                }
+            }
+            return info; // גם דף בלי מידע - קובע היכן מסתיים הפרק האחרון
+        }
+
+        @Override
+        public void finishMasechet(String masechet, Map<Integer, PageInfo> entries) {
+            Map<Integer, PageInfo> dafMap = new HashMap<>();
+            int lastDaf = 0;
+            for (Map.Entry<Integer, PageInfo> entry : entries.entrySet()) {
+                PageInfo info = entry.getValue();
+                if (info.hasMishna || info.perek > 0) dafMap.put(entry.getKey(), info);
+                lastDaf = Math.max(lastDaf, entry.getKey());
+            }
+            DataIndex.finishMasechet(masechet, dafMap, lastDaf);
+        }
+    };
+
+    /**
+     * Loads the tractate index of every tractate in {@code pages/}, from the {@link IndexSnapshot} if the corpus has
+     * not changed since it was written. Not needed before lookups, which load a tractate on first use.
+     */
     public static void loadIndex() {
-        
-        File baseDir = new File("pages/"); // object with path of pages file
-        if (!baseDir.exists()) {
-            System.out.println("תיקיית pages לא קיימת.");
+        load(true, false);
+    }
+
+    /**
+     * Builds the Mishna index (tractate → page → chapter/Mishna info) of every tractate, or loads it from the
+     * {@link IndexSnapshot} if the corpus has not changed since it was written. Not needed before lookups.
+     */
+    public static void buildMishnaIndex() {
+        load(false, true);
+    }
+
+    /** Loads both indexes of every tractate, each tractate read once (menu option 7). */
+    public static void loadAllIndexes() {
+        load(true, true);
+    }
+
+    /**
+     * Reloads the requested indexes of every tractate: from a fresh read of the snapshot where it matches, then
+     * the tractates it lacks in one scan; writes the snapshot once at the end.
+     */
+    private static void load(boolean dafs, boolean mishna) {
+        synchronized (snapshotLock) {
+            snapshot = null; // קריאה מחדש של הקובץ השמור - ייתכן שנמחק או נכתב מחדש
+        }
+        List<String> masechtot = CorpusScanner.masechtot();
+        if (masechtot == null) {
+            if (dafs) System.out.println("תיקיית pages לא קיימת.");
             return;
         }
+        // כל המנעולים לפי סדר המזהים - טעינות מקבילות נועלות באותו סדר ולא נתקעות זו בזו
+        int[] ids = masechtot.stream().mapToInt(TractateIds::id).sorted().distinct().toArray();
+        List<ReentrantLock> locks = new ArrayList<>(ids.length);
+        try {
+            for (int id : ids) {
+                ReentrantLock lock = loadLock(id);
+                lock.lock();
+                locks.add(lock);
+            }
+            int fromSnapshot = 0;
+            boolean buildingMishna = false;
+            Map<List<CorpusScanner.IndexBuilder<?>>, List<String>> missing = new LinkedHashMap<>(); // חלקים חסרים -> מסכתות
+            for (String masechet : masechtot) {
+                List<CorpusScanner.IndexBuilder<?>> builders = fromSnapshot(masechet, dafs, mishna);
+                if (builders.isEmpty()) {
+                    fromSnapshot++;
+                    continue;
+                }
+                buildingMishna |= builders.contains(MISHNA);
+                missing.computeIfAbsent(builders, key -> new ArrayList<>()).add(masechet);
+            }
+            if (buildingMishna) System.out.println("מתחיל לבנות אינדקס משניות...");
+            for (Map.Entry<List<CorpusScanner.IndexBuilder<?>>, List<String>> scan : missing.entrySet()) {
+                CorpusScanner.scan(scan.getValue(), scan.getKey()); // כל המסכתות החסרות בסריקה אחת
+            }
+            if (fromSnapshot > 0) System.out.println("האינדקס נטען מהקובץ השמור (" + fromSnapshot + " מסכתות)");
+            if (buildingMishna) System.out.println("בניית אינדקס משניות הסתיימה");
+            synchronized (snapshotLock) {
+                if (!missing.isEmpty() || snapshotDirty) saveSnapshot();
+            }
+        } finally {
+            for (ReentrantLock lock : locks) lock.unlock();
+        }
+    }
+
+    /**
+     * Makes sure one part of a tractate's index is loaded: from the snapshot, or by scanning only that tractate.
+     * Called by every lookup; once loaded this is a single lock-free map read. A scanned tractate is written to
+     * the snapshot with the next eager load, or at exit.
+     * @param dafs true for the daf list, false for the Mishna and chapter indexes
+     * @return the tractate's ID, or -1 if it was never seen and is not in the corpus
+     */
+    private static int ensureLoaded(String masechet, boolean dafs) {
+        LongObjectMap<?> index = dafs ? masechtotIndex : mishnaIndex;
+        int id = TractateIds.find(masechet); // שם שלא נראה מעולם לא מקבל מזהה אם אינו בקורפוס
+        if (id >= 0 && index.containsKey(id)) return id;
+        String name = TractateIds.normalize(masechet);
+        if (!CorpusScanner.contains(name)) return id;
 
-        for (File masechetDir : baseDir.listFiles()) { // loop on object masechetDir thet includ all files in pages
-            if (!masechetDir.isDirectory()) continue;
-            String masechetName = masechetDir.getName(); 
+        id = TractateIds.id(masechet); // זוכר גם את הכתיב שהתקבל
+        ReentrantLock lock = loadLock(id);
+        lock.lock();
+        try {
+            if (index.containsKey(id)) return id; // נטען בינתיים על ידי תהליכון אחר
+            List<CorpusScanner.IndexBuilder<?>> builders = fromSnapshot(name, dafs, !dafs);
+            if (!builders.isEmpty()) {
+                CorpusScanner.scan(Collections.singletonList(name), builders);
+                markDirty();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return id;
+    }
 
+    private static ReentrantLock loadLock(int id) {
+        return loadLocks.computeIfAbsent(id, key -> new ReentrantLock());
+    }
 
-            List<Integer> dafs = new ArrayList<>();   // dafs list: thet includ all dafs in each masechetDir
-            
-            for (File dafDir : masechetDir.listFiles()) { // dafDir loop thet includ all dafs files  
-                if (!dafDir.isDirectory()) continue;
-
-                try {
-                    int dafNumber = Integer.parseInt(dafDir.getName());
-                    dafs.add(dafNumber);                   // add each dafdir file to dafs list
-                } catch (NumberFormatException e) {
-                    System.out.println("דף לא חוקי: " + dafDir.getName());
+    /**
+     * Publishes the requested parts of the tractate that the snapshot holds.
+     * @return builders for the parts it does not hold
+     */
+    private static List<CorpusScanner.IndexBuilder<?>> fromSnapshot(String masechet, boolean dafs, boolean mishna) {
+        List<CorpusScanner.IndexBuilder<?>> builders = new ArrayList<>();
+        int id = TractateIds.id(masechet);
+        synchronized (snapshotLock) {
+            IndexSnapshot.Contents saved = snapshot();
+            if (dafs) {
+                int[] dafList = saved.dafs != null ? saved.dafs.get(masechet) : null;
+                if (dafList != null) masechtotIndex.put(id, dafList); else builders.add(DAF_LIST);
+            }
+            if (mishna) {
+                MishnaPages pages = saved.mishna != null ? saved.mishna.get(masechet) : null;
+                PerekIndex pereks = saved.pereks != null ? saved.pereks.get(masechet) : null;
+                if (pages != null && pereks != null) {
+                    perekIndex.put(id, pereks); // לפני המשניות - הן מסמנות שהמסכת נטענה
+                    mishnaIndex.put(id, pages);
+                } else {
+                    builders.add(MISHNA);
                 }
             }
-            Collections.sort(dafs);                        // binary sort
-            masechtotIndex.put(masechetName, dafs);        // put all masechetNames & dafs in masechtotIndex list
         }
+        return builders;
+    }
+
+    /** @return the snapshot read at the first load, or empty contents if none matched; call under {@link #snapshotLock} */
+    private static IndexSnapshot.Contents snapshot() {
+        if (snapshot == null) {
+            if (snapshotFingerprint == 0) {
+                snapshotFingerprint = IndexSnapshot.fingerprint(); // לפני הסריקה - שינוי בזמן הבנייה יפסול את התמונה
+            }
+            snapshot = IndexSnapshot.read(snapshotFingerprint);
+            if (snapshot == null) snapshot = new IndexSnapshot.Contents();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes the snapshot: the tractates it already held plus everything loaded now, which takes precedence.
+     * Call under {@link #snapshotLock}.
+     */
+    private static void saveSnapshot() {
+        IndexSnapshot.Contents saved = snapshot();
+        saved.dafs = merge(saved.dafs, masechtotIndex);
+        saved.mishna = merge(saved.mishna, mishnaIndex);
+        saved.pereks = merge(saved.pereks, perekIndex);
+        IndexSnapshot.write(snapshotFingerprint, saved.dafs, saved.mishna, saved.pereks);
+        snapshotDirty = false;
+    }
+
+    /** Writes the snapshot if tractates were loaded or the fingerprint changed since it was last written. */
+    static void saveLoaded() {
+        synchronized (snapshotLock) {
+            if (snapshotDirty) saveSnapshot();
+        }
+    }
+
+    /** Notes that the snapshot on disk is behind; the first time, arranges for it to be written at exit. */
+    private static void markDirty() {
+        synchronized (snapshotLock) {
+            snapshotDirty = true;
+            if (!saveHookAdded) {
+                Runtime.getRuntime().addShutdownHook(new Thread(DataIndex::saveLoaded, "bavli-index-save"));
+                saveHookAdded = true;
+            }
+        }
+    }
+
+    /**
+     * Takes a new corpus fingerprint after the corpus files changed (e.g. repacked, or re-split into the
+     * tractates that {@link #reindexMasechtot} re-indexes); the snapshot is written with it at exit.
+     */
+    static void refreshFingerprint() {
+        synchronized (snapshotLock) {
+            snapshot(); // התמונה נקראת לפי הטביעה הקודמת, שהתאימה לה
+            snapshotFingerprint = IndexSnapshot.fingerprint();
+        }
+        markDirty();
+    }
+
+    /** @return the saved entries overlaid with the loaded ones, keyed by tractate name; null if there are neither */
+    private static <V> Map<String, V> merge(Map<String, V> saved, LongObjectMap<V> index) {
+        if (saved == null && index.isEmpty()) return null;
+        Map<String, V> result = saved != null ? new LinkedHashMap<>(saved) : new LinkedHashMap<>();
+        for (long id : index.keys()) {
+            V value = index.get(id);
+            if (value != null) result.put(TractateIds.name((int) id), value);
+        }
+        return result;
     }
 
-    /** @return list of all tractate names in the index */
+    /**
+     * Drops every loaded tractate, the snapshot read and the fingerprint, e.g. after the corpus was split again;
+     * the next lookups load again as at startup. Unsaved tractates are not written.
+     */
+    static void unloadAll() {
+        synchronized (snapshotLock) {
+            snapshot = null;
+            snapshotFingerprint = 0;
+            snapshotDirty = false;
+            masechtotIndex.clear();
+            perekIndex.clear();
+            mishnaIndex.clear();
+        }
+    }
+
+    /** @return how many tractates have their daf list loaded */
+    static int loadedMasechtot() {
+        return masechtotIndex.size();
+    }
+
+    /** @return how many tractates have their Mishna index loaded */
+    static int loadedMishna() {
+        return mishnaIndex.size();
+    }
+
+    /** @return the tractate's Mishna info, loading it on first use; null if the tractate is not in the corpus */
+    static MishnaPages getMishnaPages(String masechet) {
+        return lookup(mishnaIndex, masechet);
+    }
+
+    /**
+     * Re-indexes only the given tractates (e.g. after an incremental re-split). Parts of a tractate that were
+     * never loaded stay unloaded and will be scanned on first use; tractates that no longer exist are dropped.
+     */
+    public static void reindexMasechtot(Collection<String> masechtot) {
+        synchronized (snapshotLock) {
+            IndexSnapshot.Contents saved = snapshot();
+            for (String masechet : masechtot) { // התמונה כבר לא נכונה למסכתות האלה
+                String name = TractateIds.normalize(masechet);
+                if (saved.dafs != null) saved.dafs.remove(name);
+                if (saved.mishna != null) saved.mishna.remove(name);
+                if (saved.pereks != null) saved.pereks.remove(name);
+            }
+        }
+        refreshFingerprint(); // לפני הסריקה - שאר המסכתות בתמונה לא השתנו
+        for (String masechet : masechtot) {
+            int id = TractateIds.find(masechet);
+            if (id < 0) continue; // לא נטענה מעולם
+            ReentrantLock lock = loadLock(id);
+            lock.lock();
+            try {
+                if (!CorpusScanner.contains(TractateIds.name(id))) { // המסכת נמחקה
+                    masechtotIndex.remove(id);
+                    mishnaIndex.remove(id);
+                    perekIndex.remove(id);
+                    continue;
+                }
+                List<CorpusScanner.IndexBuilder<?>> builders = new ArrayList<>();
+                if (masechtotIndex.containsKey(id)) builders.add(DAF_LIST);
+                if (mishnaIndex.containsKey(id)) builders.add(MISHNA);
+                // הרשומות הישנות מוחלפות רק אחרי שהחדשות מוכנות - קוראים במקביל לא רואים מסכת חסרה
+                CorpusScanner.scan(Collections.singletonList(TractateIds.name(id)), builders);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** @return list of all tractate names in the corpus; lists them without loading any index */
     public static List<String> getAllMasechtot() {
-        return new ArrayList<>(masechtotIndex.keySet());
+        List<String> names = CorpusScanner.masechtot();
+        return names != null ? names : new ArrayList<>();
     }
 
-    /** @return list of page (daf) numbers for the given tractate */
+    /** @return list of page (daf) numbers for the given tractate, ascending; a read-only view of the index */
     public static List<Integer> getDafsForMasechet(String masechet) {
-        return masechtotIndex.getOrDefault(masechet.toLowerCase(), new ArrayList<>());
+        int[] dafs = lookup(masechtotIndex, masechet);
+        return dafs != null ? new DafList(dafs) : new ArrayList<>();
     }
 
     /** @return true if the tractate exists in the index */
     public static boolean masechetExists(String masechet) {
-        return masechtotIndex.containsKey(masechet.toLowerCase());
+        return lookup(masechtotIndex, masechet) != null;
     }
 
     /** @return true if the given page number exists in the tractate */
     public static boolean dafExists(String masechet, int daf) {
-        List<Integer> dafs = masechtotIndex.get(masechet.toLowerCase());
+        int[] dafs = lookup(masechtotIndex, masechet);
         if (dafs == null) return false;
-        return Collections.binarySearch(dafs, daf) >= 0;
+        return Arrays.binarySearch(dafs, daf) >= 0;
     }
 
-    /** Builds the Mishna index (tractate → page → chapter/Mishna info) from {@code pages/}. */
-    public static void buildMishnaIndex() {
-         
-        File baseDir = new File("pages/");
-        if (!baseDir.exists()) return;
-
-        System.out.println("מתחיל לבנות אינדקס משניות...");
-
-        for (File masechetDir : baseDir.listFiles()) {
-            if (!masechetDir.isDirectory()) continue;
+    /**
+     * Scans one amud for Mishna markers and chapter headers, accumulating into {@code info}.
+     * @param amud 0 for alef, 1 for bet, -1 for a file that is neither (its headers get no position)
+     */
+    private static void scanAmudLines(BufferedReader reader, PageInfo info, int dafNumber, int amud, String masechet, List<String> log) throws IOException {
+        String line;
+        for (int lineNumber = 0; (line = reader.readLine()) != null; lineNumber++) {
+            // חיפוש משנה
+            if (line.startsWith("משנה   ")) {
+                info.hasMishna = true;
+            }
             
-            String masechet = masechetDir.getName();
-            Map<Integer, PageInfo> dafMap = new HashMap<>(); //
-            Map<Integer, Integer> dafToPerekMap = new HashMap<>(); // אינדקס פרק לפי דף - לשימוש לזיהוי פרקים בהמשך
-
-            System.out.println("מעבד מסכת: " + masechet);
             
-            // שלב ראשון: מציאת מידע על פרקים ומשניות
-            for (File dafDir : masechetDir.listFiles()) {
-                if (!dafDir.isDirectory()) continue;
-                
-                try {
-                    int dafNumber = Integer.parseInt(dafDir.getName());
-                    boolean hasMishna = false;
-                    int perek = -1;
-
-                    // בדיקה של קבצי העמודים
-                    File[] amudFiles = dafDir.listFiles();
-                    if (amudFiles != null) {
-                        for (File amudFile : amudFiles) {
-                            if (!amudFile.isFile()) continue;
-                            
-                            try (BufferedReader reader = new BufferedReader(new FileReader(amudFile))) {
-                                String line;
-                                while ((line = reader.readLine()) != null) {
-                                    // חיפוש משנה
-                                    if (line.startsWith("משנה   ")) {
-                                        hasMishna = true;
-                                    }
-                                    
-                                    
-                                    if (line.contains("פרק")) { // חיפוש פרק - בדיקת כמה פורמטים אפשריים
-                                        // בדיקת שורה שמתחילה ב"מסכת" ומכילה "פרק"
-                                        if (line.startsWith("מסכת") && line.contains("פרק")) { // בדיקת שורה שמתחילה ב"מסכת" ומכילה "פרק"
-                                            int perekIndex = line.indexOf("פרק");
-                                            if (perekIndex >= 0) {
-                                                String remainingText = line.substring(perekIndex + 3).trim();
-                                                String[] words = remainingText.split("\\s+");
-                                                if (words.length > 0) {
-                                                    int extractedPerek = hebrewToNumber(words[0].trim());
-                                                    if (extractedPerek > 0) {
-                                                        perek = extractedPerek;
-                                                        System.out.println("נמצא פרק " + perek + " בדף " + dafNumber + " במסכת " + masechet);
-                                                    }
-                                                }
-                                            }
-                                        } 
-                                        // בדיקת פורמט "פרק X"
-                                        else {
-                                            int perekIndex = line.indexOf("פרק");
-                                            if (perekIndex >= 0 && perekIndex + 4 < line.length()) {
-                                                String afterPerek = line.substring(perekIndex + 4).trim();
-                                                String perekNum = afterPerek.split("\\s+")[0];
-                                                int extractedPerek = hebrewToNumber(perekNum);
-                                                if (extractedPerek > 0) {
-                                                    perek = extractedPerek;
-                                                    System.out.println("נמצא פרק " + perek + " בדף " + dafNumber + " במסכת " + masechet);
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            } catch (IOException e) {
-                                System.out.println("שגיאה בקריאת קובץ: " + amudFile.getPath() + " - " + e.getMessage());
-                            }
+            if (line.contains("פרק")) { // חיפוש פרק - בדיקת כמה פורמטים אפשריים
+                // בדיקת שורה שמתחילה ב"מסכת" ומכילה "פרק"
+                if (line.startsWith("מסכת") && line.contains("פרק")) { // בדיקת שורה שמתחילה ב"מסכת" ומכילה "פרק"
+                    int perekIndex = line.indexOf("פרק");
+                    if (perekIndex >= 0) {
+                        int extractedPerek = Gematria.parseWord(line, perekIndex + 3); // המילה שאחרי "פרק", בלי העתקות
+                        if (extractedPerek > 0) {
+                            info.perek = extractedPerek;
+                            info.addPerekStart(amud, lineNumber, extractedPerek);
+                            log.add("נמצא פרק " + info.perek + " בדף " + dafNumber + " במסכת " + masechet);
                         }
                     }
-
-                    // שמירת מידע על פרק ומשנה לדף הנוכחי
-                    if (hasMishna || perek > 0) {
-                        dafMap.put(dafNumber, new PageInfo(hasMishna, perek));
-                        
-                        // אם מצאנו פרק, נשמור אותו במפת דף->פרק
-                        if (perek > 0) {
-                            dafToPerekMap.put(dafNumber, perek);
+                } 
+                // בדיקת פורמט "פרק X"
+                else {
+                    int perekIndex = line.indexOf("פרק");
+                    if (perekIndex >= 0 && perekIndex + 4 < line.length()) {
+                        int extractedPerek = Gematria.parseWord(line, perekIndex + 4);
+                        if (extractedPerek > 0) {
+                            info.perek = extractedPerek;
+                            info.addPerekStart(amud, lineNumber, extractedPerek);
+                            log.add("נמצא פרק " + info.perek + " בדף " + dafNumber + " במסכת " + masechet);
                         }
                     }
-                } catch (NumberFormatException e) {
-                    System.out.println("דף לא חוקי: " + dafDir.getName());
-                }
-            }
-            
-            // שלב שני: השלמת מידע פרק לדפים עם משניות ללא מידע פרק
-            // מסדרים את הדפים לפי מספר עולה
-            List<Integer> sortedDafs = new ArrayList<>(dafMap.keySet());
-            Collections.sort(sortedDafs);
-            
-            int currentPerek = -1;
-            for (int daf : sortedDafs) {
-                PageInfo info = dafMap.get(daf);
-                
-                // אם יש מידע על פרק בדף הנוכחי, נעדכן את הפרק הנוכחי
-                if (info.perek > 0) {
-                    currentPerek = info.perek;
-                } 
-                // אם אין מידע על פרק אבל יש משנה, וכבר יודעים את הפרק הנוכחי, נשייך את המשנה לפרק הנוכחי
-                else if (info.hasMishna && currentPerek > 0) {
-                    info.perek = currentPerek;
-                    System.out.println("שיוך משנה בדף " + daf + " לפרק " + currentPerek + " במסכת " + masechet);
                 }
             }
-            
-            if (!dafMap.isEmpty()) {
-                mishnaIndex.put(masechet, dafMap);
-                System.out.println("נוספו " + dafMap.size() + " דפים עם מידע על משניות/פרקים למסכת " + masechet);
-            }
         }
-        
-        System.out.println("בניית אינדקס משניות הסתיימה");
     }
-
-    /** @return list of page numbers that contain Mishna for the given tractate and chapter (perek) */
-    public static List<Integer> getDafsWithMishna(String masechet, int perek) {
-        List<Integer> result = new ArrayList<>();
-        Map<Integer, PageInfo> dafMap = mishnaIndex.get(masechet);
+    /** Second pass: fills in the chapter for Mishna pages without a header, then publishes the tractate. */
+    private static void finishMasechet(String masechet, Map<Integer, PageInfo> dafMap, int lastDaf) {
+        // שלב שני: השלמת מידע פרק לדפים עם משניות ללא מידע פרק
+        // מסדרים את הדפים לפי מספר עולה
+        List<Integer> sortedDafs = new ArrayList<>(dafMap.keySet());
+        Collections.sort(sortedDafs);
         
-        System.out.println("מחפש דפים עם משניות במסכת " + masechet + " פרק " + perek);
-        System.out.println("האם קיים מידע למסכת זו במפה: " + (dafMap != null));
+        int currentPerek = -1;
+        for (int daf : sortedDafs) {
+            PageInfo info = dafMap.get(daf);
+            
+            // אם יש מידע על פרק בדף הנוכחי, נעדכן את הפרק הנוכחי
+            if (info.perek > 0) {
+                currentPerek = info.perek;
+            } 
+            // אם אין מידע על פרק אבל יש משנה, וכבר יודעים את הפרק הנוכחי, נשייך את המשנה לפרק הנוכחי
+            else if (info.hasMishna && currentPerek > 0) {
+                info.perek = currentPerek;
+                System.out.println("שיוך משנה בדף " + daf + " לפרק " + currentPerek + " במסכת " + masechet);
+            }
+        }
         
-        if (dafMap == null || dafMap.isEmpty()) { 
-            // אם אין מידע במפה, ננסה לחפש בכל הדפים של המסכת
-            List<Integer> allDafs = getDafsForMasechet(masechet);
-            System.out.println("לא נמצא מידע על פרקים ומשניות, מחזיר את כל הדפים של המסכת: " + allDafs.size() + " דפים");
-            return allDafs.isEmpty() ? result : allDafs.subList(0, Math.min(10, allDafs.size())); // מחזיר עד 10 דפים ראשונים
+        // גם מסכת בלי משניות נרשמת - כך ידוע שנסרקה ולא תיסרק שוב בחיפוש הבא
+        int id = TractateIds.id(masechet);
+        perekIndex.put(id, perekIndexOf(dafMap, lastDaf));
+        mishnaIndex.put(id, MishnaPages.of(dafMap));
+        if (!dafMap.isEmpty()) {
+            System.out.println("נוספו " + dafMap.size() + " דפים עם מידע על משניות/פרקים למסכת " + masechet);
         }
+    }
 
-        System.out.println("מספר דפים במפה: " + dafMap.size());
-        // בדיקה כמה דפים יש עם משניות בכלל
-        int countWithMishna = 0;
+    /** Collects the chapter headers recorded by the scan into the tractate's {@link PerekIndex}. */
+    private static PerekIndex perekIndexOf(Map<Integer, PageInfo> dafMap, int lastDaf) {
+        int count = 0;
         for (PageInfo info : dafMap.values()) {
-            if (info.hasMishna) countWithMishna++;
+            if (info.perekStarts != null) count += info.perekStarts.size();
         }
-        System.out.println("מספר דפים עם משניות: " + countWithMishna);
-        
-        // חיפוש דפים בפרק המבוקש
+        long[] positions = new long[count];
+        int[] pereks = new int[count];
+        int i = 0;
         for (Map.Entry<Integer, PageInfo> entry : dafMap.entrySet()) {
-            PageInfo info = entry.getValue();
-            // מחזירים דף אם יש בו משנה והוא מהפרק המבוקש או אם מספר הפרק לא ידוע (-1)
-            if (info.hasMishna && (info.perek == perek || info.perek == -1)) {
-                result.add(entry.getKey());
-                System.out.println("נמצא דף " + entry.getKey() + " עם משנה" + 
-                                   (info.perek == -1 ? " (פרק לא ידוע)" : " בפרק " + info.perek));
+            if (entry.getValue().perekStarts == null) continue;
+            for (int[] start : entry.getValue().perekStarts) {
+                positions[i] = PerekIndex.position(entry.getKey(), start[0], start[1]);
+                pereks[i++] = start[2];
             }
         }
-        
-        // אם לא נמצאו דפים בפרק המבוקש, ננסה להחזיר את כל הדפים עם משניות
-        if (result.isEmpty()) {
-            System.out.println("לא נמצאו דפים בפרק המבוקש, מחפש כל דף עם משניות");
-            for (Map.Entry<Integer, PageInfo> entry : dafMap.entrySet()) {
-                if (entry.getValue().hasMishna) {
-                    result.add(entry.getKey());
+        return PerekIndex.of(positions, pereks, lastDaf);
+    }
+
+    /**
+     * @return the perek in effect at the start of the daf (before any header on it), or -1 if the daf comes
+     *         before the first header or the Mishna index has no chapters for the tractate
+     */
+    public static int getPerekOfDaf(String masechet, int daf) {
+        PerekIndex pereks = lookup(perekIndex, masechet);
+        return pereks == null ? -1 : pereks.perekAt(daf, 0, 0);
+    }
+
+    /**
+     * @return the amudim of the perek in reading order, each trimmed to the perek's lines, from its header to the
+     *         next one; empty if the index has no header for it. Dafs missing from the tractate index are skipped.
+     */
+    static List<PerekIndex.Span> getPerekSpans(String masechet, int perek) {
+        PerekIndex pereks = lookup(perekIndex, masechet);
+        if (pereks == null) return new ArrayList<>();
+        List<PerekIndex.Span> spans = pereks.spans(perek);
+        int[] dafs = lookup(masechtotIndex, masechet);
+        if (dafs != null) {
+            spans.removeIf(span -> Arrays.binarySearch(dafs, span.daf) < 0);
+        }
+        return spans;
+    }
+
+    /**
+     * @return the dafs with a Mishna of the perek, in order: those of the perek's dafs ({@link #getPerekDafs}) that
+     *         have a Mishna, or without a chapter header the dafs marked with this perek or an unknown one; if none
+     *         match, every daf of the tractate that has a Mishna
+     */
+    public static List<Integer> getDafsWithMishna(String masechet, int perek) {
+        List<Integer> result = new ArrayList<>();
+        MishnaPages dafMap = lookup(mishnaIndex, masechet);
+        if (dafMap == null) return result;
+        List<Integer> perekDafs = getPerekDafs(masechet, perek);
+        if (!perekDafs.isEmpty()) {
+            for (int daf : perekDafs) {
+                if (dafMap.hasMishna(daf)) result.add(daf);
+            }
+        } else {
+            for (int daf : dafMap.dafs()) {
+                int dafPerek = dafMap.perek(daf);
+                // מחזירים דף אם יש בו משנה והוא מהפרק המבוקש או אם מספר הפרק לא ידוע (-1)
+                if (dafMap.hasMishna(daf) && (dafPerek == perek || dafPerek == -1)) {
+                    result.add(daf);
                 }
             }
         }
         
-        System.out.println("מחזיר " + result.size() + " דפים");
+        // אם לא נמצאו דפים בפרק המבוקש, מחזירים את כל הדפים עם משניות
+        if (result.isEmpty()) {
+            for (int daf : dafMap.dafs()) {
+                if (dafMap.hasMishna(daf)) result.add(daf);
+            }
+        }
         return result;
     }
-    private static class PageInfo { // מידע על דף האם קיים בו משנה ופרק
+
+    /**
+     * @return the dafs the perek spans in the chapter index, in order, from its header to the next one; empty if the
+     *         index has no header for it
+     */
+    public static List<Integer> getPerekDafs(String masechet, int perek) {
+        List<Integer> result = new ArrayList<>();
+        for (PerekIndex.Span span : getPerekSpans(masechet, perek)) {
+            if (result.isEmpty() || result.get(result.size() - 1) != span.daf) result.add(span.daf); // עמוד א וב של אותו דף
+        }
+        return result;
+    }
+
+    /** @return the tractate's entry, loading the tractate on first use; null if the tractate is not in the corpus */
+    private static <V> V lookup(LongObjectMap<V> index, String masechet) {
+        int id = ensureLoaded(masechet, index == masechtotIndex);
+        return id < 0 ? null : index.get(id);
+    }
+
+
+    /** Read-only list view of a tractate's sorted daf array. */
+    private static final class DafList extends AbstractList<Integer> implements RandomAccess {
+        private final int[] dafs;
+
+        DafList(int[] dafs) {
+            this.dafs = dafs;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return dafs[index];
+        }
+
+        @Override
+        public int size() {
+            return dafs.length;
+        }
+    }
+
+    static class PageInfo { // מידע על דף בזמן הסריקה - נארז ל-MishnaPages בסיומה
         boolean hasMishna;
         int perek;
+        List<int[]> perekStarts; // {עמוד, שורה, פרק} לכל כותרת פרק בדף
 
         PageInfo(boolean hasMishna, int perek) {
             this.hasMishna = hasMishna;
             this.perek = perek;
         }
+
+        void addPerekStart(int amud, int line, int perek) {
+            if (amud < 0) return;
+            if (perekStarts == null) perekStarts = new ArrayList<>(2);
+            perekStarts.add(new int[] {amud, line, perek});
+        }
     }
 
-    /** Converts Hebrew numeral letters to a decimal number. */
+    /** Converts Hebrew numeral letters to a decimal number; 0 if the text is not a numeral. See {@link Gematria}. */
     public static int hebrewToNumber(String hebrew) {
-        switch (hebrew.trim()) {
-            case "א": return 1;         case "ב": return 2;         case "ג": return 3;     case "ד": return 4;
-            case "ה": return 5;         case "ו": return 6;         case "ז": return 7;     case "ח": return 8;
-            case "ט": return 9;         case "י": return 10;        case "יא": return 11;       case "יב": return 12;
-            case "יג": return 13;       case "יד": return 14;       case "טו": return 15;       case "טז": return 16;
-            case "יז": return 17;       case "יח": return 18;       case "יט": return 19;       case "כ": return 20;
-            case "כא": return 21;       case "כב": return 22;       case "כג": return 23;       case "כד": return 24;
-            case "כה": return 25;       case "כו": return 26;       case "כז": return 27;       case "כח": return 28;
-            case "כט": return 29;       case "ל": return 30;        case "לא": return 31;       case "לב": return 32;
-            case "לג": return 33;       case "לד": return 34;       case "לה": return 35;       case "לו": return 36;
-            case "לז": return 37;       case "לח": return 38;       case "לט": return 39;       case "מ": return 40;
-            case "מא": return 41;       case "מב": return 42;       case "מג": return 43;       case "מד": return 44;
-            case "מה": return 45;       case "מו": return 46;       case "מז": return 47;       case "מח": return 48;
-            case "מט": return 49;       case "נ": return 50;        case "נא": return 51;       case "נב": return 52;
-            case "נג": return 53;       case "נד": return 54;       case "נה": return 55;       case "נו": return 56;
-            case "נז": return 57;       case "נח": return 58;       case "נט": return 59;       case "ס": return 60;
-            case "סא": return 61;       case "סב": return 62;       case "סג": return 63;       case "סד": return 64;
-            case "סה": return 65;       case "סו": return 66;       case "סז": return 67;       case "סח": return 68;
-            case "סט": return 69;       case "ע": return 70;        case "עא": return 71;       case "עב": return 72;
-            case "עג": return 73;       case "עד": return 74;       case "עה": return 75;       case "עו": return 76;
-            case "עז": return 77;       case "עח": return 78;       case "עט": return 79;       case "פ": return 80;
-            case "פא": return 81;       case "פב": return 82;       case "פג": return 83;       case "פד": return 84;
-            case "פה": return 85;       case "פו": return 86;       case "פז": return 87;       case "פח": return 88;
-            case "פט": return 89;       case "צ": return 90;        case "צא": return 91;       case "צב": return 92;
-            case "צג": return 93;       case "צד": return 94;       case "צה": return 95;       case "צו": return 96;
-            case "צז": return 97;       case "צח": return 98;       case "צט": return 99;       case "ק": return 100;
-            case "קא": return 101;      case "קב": return 102;      case "קג": return 103;      case "קד": return 104;
-            case "קה": return 105;      case "קו": return 106;      case "קז": return 107;      case "קח": return 108;
-            case "קט": return 109;      case "קי": return 110;      case "קיא": return 111;     case "קיב": return 112;
-            case "קיג": return 113;     case "קיד": return 114;     case "קטו": return 115;     case "קטז": return 116;
-            case "קיז": return 117;     case "קיח": return 118;     case "קיט": return 119;     case "קכ": return 120;
-            case "קכא": return 121;     case "קכב": return 122;     case "קכג": return 123;     case "קכד": return 124;
-            case "קכה": return 125;     case "קכו": return 126;     case "קכז": return 127;     case "קכח": return 128;
-            case "קכט": return 129;     case "קל": return 130;      case "קלא": return 131;     case "קלב": return 132;
-            case "קלג": return 133;     case "קלד": return 134;     case "קלה": return 135;     case "קלו": return 136;
-            case "קלז": return 137;     case "קלח": return 138;     case "קלט": return 139;     case "קמ": return 140;
-            case "קמא": return 141;     case "קמב": return 142;     case "קמג": return 143;     case "קמד": return 144;
-            case "קמה": return 145;     case "קמו": return 146;     case "קמז": return 147;     case "קמח": return 148;
-            case "קמט": return 149;     case "קנ": return 150;      case "קנא": return 151;     case "קנב": return 152;
-            case "קנג": return 153;     case "קנד": return 154;     case "קנה": return 155;     case "קנו": return 156;
-            case "קנז": return 157;     case "קנח": return 158;     case "קנט": return 159;     case "קס": return 160;
-            case "קסא": return 161;     case "קסב": return 162;     case "קסג": return 163;     case "קסד": return 164;
-            case "קסה": return 165;     case "קסו": return 166;     case "קסז": return 167;     case "קסח": return 168;
-            case "קסט": return 169;     case "קצ": return 170;      case "קצא": return 171;     case "קצב": return 172;
-            case "קצג": return 173;     case "קצד": return 174;     case "קצה": return 175;     case "קצו": return 176;
-            default: return 0;
-        }
+        return Gematria.parse(hebrew);
     }
 }
\ No newline at end of file
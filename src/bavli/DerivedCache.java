@@ -0,0 +1,91 @@
+package bavli;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Second-level cache for results derived from page text: extracted Mishnayot per (masechet, perek) and rendered
+ * HTML per (page, template version). Each entry remembers a fingerprint of the texts it was built from (their
+ * lengths and {@link String#hashCode}, which a cached page computes only once) and is rebuilt as soon as the
+ * current texts differ, so a re-split or edited page invalidates it without any explicit call. Holds the
+ * {@code bavli.derived.maxEntries} most recently used entries (default 256).
+ */
+public class DerivedCache {
+
+    private static final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true) { // סדר גישה - LRU
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > AppConfig.getInt("bavli.derived.maxEntries", 256);
+        }
+    };
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong builds = new AtomicLong();
+
+    private static final class Entry {
+        final long fingerprint;
+        final Object value;
+
+        Entry(long fingerprint, Object value) {
+            this.fingerprint = fingerprint;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Returns the value cached under {@code key} if it was built from the same {@code sources}; otherwise
+     * builds it with {@code builder} and caches it. The value must not be modified by callers.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T get(String key, List<String> sources, Supplier<T> builder) {
+        long fingerprint = fingerprint(sources);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.fingerprint == fingerprint) {
+                hits.incrementAndGet();
+                return (T) entry.value;
+            }
+        }
+        T value = builder.get(); // בנייה מחוץ לנעילה - בונים אחרים לא ממתינים
+        builds.incrementAndGet();
+        synchronized (entries) {
+            entries.put(key, new Entry(fingerprint, value));
+        }
+        return value;
+    }
+
+    /** Drops every entry. */
+    public static void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /** Number of entries built or rebuilt because the source texts changed. */
+    public static long getBuilds() {
+        return builds.get();
+    }
+
+    /** @return one-line summary for the cache info screens */
+    public static String getSummary() {
+        return "מטמון תוצרים (משניות/HTML): " + size() + " רשומות, פגיעות " + hits.get() + ", בניות " + builds.get();
+    }
+
+    private static long fingerprint(List<String> sources) {
+        long h = sources.size();
+        for (String source : sources) {
+            h = h * 0x9e3779b97f4a7c15L + (((long) source.length() << 32) ^ (source.hashCode() & 0xffffffffL));
+        }
+        return h;
+    }
+}
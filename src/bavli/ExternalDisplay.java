@@ -6,13 +6,12 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File; 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Date;
-import java.io.BufferedReader; 
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.concurrent.ExecutionException; 
 
 /**
@@ -29,12 +28,14 @@ public class ExternalDisplay extends JFrame implements ActionListener {
     private JTextField txtExportPath;   // שדה נתיב לייצוא
     private JTabbedPane tabbedPane;     // לשוניות לתצוגת אזורים שונים
     private JCheckBox chkFuzzySearch;   // תיבת סימון לחיפוש מטושטש
+    private JCheckBox chkParallelSplit; // תיבת סימון לפיצול מקבילי
     private JSpinner spnMaxDistance;    // בורר למרחק מקסימלי בחיפוש מטושטש
     
     // מצב נוכחי של הדף המוצג
     private String currentMasechet = "";
     private int currentDaf = -1;
     private char currentAmud = ' ';
+    private boolean reselectingNote = false; // בחירה מחדש אחרי רענון - לא לטעון את ההערה מעל עריכה שלא נשמרה
 
     public ExternalDisplay() { // בונה את ממשק המשתמש
         setTitle("by Nafi פרויקט תלמוד בבלי");
@@ -242,7 +243,7 @@ public class ExternalDisplay extends JFrame implements ActionListener {
         
         // האזנה לשינויים ברשימה
         notesList.addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting() && notesList.getSelectedValue() != null) {
+            if (!e.getValueIsAdjusting() && !reselectingNote && notesList.getSelectedValue() != null) {
                 String selectedNote = notesList.getSelectedValue();
                 // טעינת ההערה הנבחרת
                 String[] noteInfo = PersonalNotes.decodeNoteFileName(selectedNote);
@@ -324,6 +325,21 @@ public class ExternalDisplay extends JFrame implements ActionListener {
         // הגדרת פעולה לכפתור הצגת כל ההערות
         btnViewNotes.addActionListener(e -> refreshNotesList(notesListModel));
         
+        // רענון הרשימה כשקבצי הערות נוספים או נמחקים מחוץ לחלון (מהתפריט או ידנית)
+        PageWatcher.addNotesListener(() -> SwingUtilities.invokeLater(() -> {
+            if (new HashSet<>(Collections.list(notesListModel.elements())).equals(PersonalNotes.getAllNotes().keySet())) {
+                return; // רק תוכן השתנה - הרשימה עדיין נכונה
+            }
+            String selected = notesList.getSelectedValue();
+            refreshNotesList(notesListModel);
+            reselectingNote = true;
+            try {
+                notesList.setSelectedValue(selected, false);
+            } finally {
+                reselectingNote = false;
+            }
+        }));
+        
         return panel;
     }
     
@@ -382,9 +398,12 @@ public class ExternalDisplay extends JFrame implements ActionListener {
         txtFilePath = createTextField(25);
         txtFilePath.setText("C:\\Users\\nafta\\Desktop\\java\\BavliManager (3)\\BavliManager\\bavli.txt");
         btnSplitFile = createButton("פצל קובץ");
+        chkParallelSplit = new JCheckBox("פיצול מקבילי על כל הליבות"); // כברירת מחדל - פיצול רגיל
+        chkParallelSplit.setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
         
         splitFilePanel.add(lblFilePath);
         splitFilePanel.add(txtFilePath);
+        splitFilePanel.add(chkParallelSplit);
         splitFilePanel.add(btnSplitFile);
         panel.add(splitFilePanel);
         
@@ -497,9 +516,21 @@ public class ExternalDisplay extends JFrame implements ActionListener {
         currentDaf = daf;
         currentAmud = amud;
         
-        // טעינת הדף
-        String page = FileManager.loadPage(masechet, daf, amud);
-        
+        // טעינת הדף ברקע - ממשק המשתמש לא נתקע בזמן הקריאה מהדיסק
+        outputArea.setText("טוען...");
+        FileManager.loadPageAsync(masechet, daf, amud).whenComplete((page, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                showError("שגיאה בטעינת הדף: " + error.getMessage());
+                return;
+            }
+            if (daf != currentDaf || amud != currentAmud || !masechet.equals(currentMasechet)) {
+                return; // בינתיים נבחר דף אחר
+            }
+            showLoadedPage(masechet, daf, amud, page);
+        }));
+    }
+
+    private void showLoadedPage(String masechet, int daf, char amud, String page) {
         // מעבר ללשונית תצוגת דף
         tabbedPane.setSelectedIndex(0);
         outputArea.setText(page.isEmpty() ? "לא נמצא הדף." : page);
@@ -601,24 +632,9 @@ public class ExternalDisplay extends JFrame implements ActionListener {
             protected Void doInBackground() throws Exception {
                 // Path from existing code context
                 String filePath = "C:\\Users\\nafta\\Desktop\\java\\BavliManager\\bavli.txt";
-                try (BufferedReader reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
-                    String line;
-                    StringBuilder chunkBuffer = new StringBuilder();
-                    int linesInChunk = 0;
-                    final int BATCH_SIZE = 100; // Number of lines per chunk
-
-                    while ((line = reader.readLine()) != null) {
-                        chunkBuffer.append(line).append("\n");
-                        linesInChunk++;
-                        if (linesInChunk >= BATCH_SIZE) {
-                            publish(chunkBuffer.toString());
-                            chunkBuffer.setLength(0); // Reset buffer
-                            linesInChunk = 0;
-                        }
-                    }
-                    if (chunkBuffer.length() > 0) { // Publish any remaining lines
-                        publish(chunkBuffer.toString());
-                    }
+                // Stream the file in decoded chunks; nothing but the text area holds the whole text
+                if (!FileManager.streamFullText(filePath, StandardCharsets.UTF_8, chunk -> publish(chunk.toString()))) {
+                    throw new IOException("לא ניתן לקרוא את הקובץ " + filePath);
                 }
                 // If doInBackground completes without publishing (e.g., empty file),
                 // 'contentPublished' remains false. 'process' won't be called.
@@ -683,12 +699,17 @@ public class ExternalDisplay extends JFrame implements ActionListener {
         }
         
         outputArea.setText("מפצל את הקובץ...");
+        boolean parallel = chkParallelSplit.isSelected();
         
         // הרץ את הפיצול בנפרד כדי לא לתקוע את הממשק
         new SwingWorker<Void, Void>() {
             @Override
             protected Void doInBackground() throws Exception {
-                FileManager.splitFile(path);
+                if (parallel) {
+                    FileManager.splitFileParallel(path); // פיצול מקבילי לפי מסכתות
+                } else {
+                    FileManager.splitFile(path); // פיצול הקובץ הראשי לדפים
+                }
                 return null;
             }
 
@@ -706,8 +727,7 @@ public class ExternalDisplay extends JFrame implements ActionListener {
         new SwingWorker<StringBuilder, Void>() {
             @Override
             protected StringBuilder doInBackground() throws Exception {
-                DataIndex.loadIndex();
-                DataIndex.buildMishnaIndex();
+                DataIndex.loadAllIndexes(); // קריאה אחת של הקורפוס לשני האינדקסים
                 
                 StringBuilder indexInfo = new StringBuilder();
                 indexInfo.append("אינדקס נטען.").append("\n");
@@ -772,9 +792,17 @@ public class ExternalDisplay extends JFrame implements ActionListener {
         StringBuilder info = new StringBuilder();
         info.append("מידע על מטמון:").append("\n");
         info.append("========================").append("\n");
-        info.append("גודל נוכחי של המטמון: ").append(CacheManager.getSize()).append(" פריטים").append("\n");
-        info.append("הגודל המקסימלי של המטמון: ").append(CacheManager.getMaxSize()).append(" פריטים").append("\n");
-        info.append("המטמון מנוהל כ-LinkedHashMap עם מדיניות LRU").append("\n");
+        info.append("גודל נוכחי של המטמון: ").append(CacheManager.getSize()).append(" פריטים, ")
+            .append(CacheManager.getWeightedSize() / 1024).append("KB").append("\n");
+        info.append("תקציב המטמון: ").append(CacheManager.getEffectiveMaxBytes() / 1024).append("KB מתוך ")
+            .append(CacheManager.getMaxBytes() / 1024).append("KB").append("\n");
+        info.append(CacheManager.getPolicyDescription()).append("\n");
+        info.append("שכבה חמה (מחוץ לערימה): ").append(CacheManager.getWarmSize()).append(" פריטים, ")
+            .append(CacheManager.getWarmUsedBytes() / 1024).append("KB מתוך ")
+            .append(CacheManager.getWarmCapacity() / 1024).append("KB").append("\n");
+        info.append(CacheManager.stats().toDisplayString()).append("\n");
+        info.append(PagePrefetcher.getSummary()).append("\n");
+        info.append(DerivedCache.getSummary()).append("\n");
         
         info.append("\nפריטים פופולריים במטמון:").append("\n");
         List<String> popularItems = CacheManager.getPopularItems(5);
@@ -1,10 +1,25 @@
 package bavli;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 
 /**
  * File system operations: loading full text, splitting a main file into tractate/page structure,
- * and loading individual Talmud pages (with cache key usage).
+ * and loading individual Talmud pages (with cache key usage). Pages are read from the
+ * {@link PackedCorpus} when one exists, falling back to the {@code pages/} tree.
  */
 public class FileManager {
 
@@ -23,94 +38,96 @@ public class FileManager {
         return content.toString(); // החזרת התוכן המלא של הקובץ כמחרוזת
     }
 
-    /** Splits the main Talmud text file into {@code pages/}&lt;tractate&gt;/&lt;daf&gt;/alef.txt and bet.txt. */
-    public static void splitFile (String filePath) {
-        BufferedReader reader = null; // קריאה לקובץ
-        String currentMasechet = null; // מסכת נוכחית
-        int currentDaf = -1; // דף נוכחי
-        char currentAmud = ' '; // עמוד נוכחי
-        StringBuilder pageContent = new StringBuilder(); // תוכן הדף הנוכחי
+    /**
+     * Streams the file at {@code path} to {@code consumer} in chunks of decoded text, so memory use stays
+     * constant regardless of file size. The file is memory-mapped window by window; each chunk is only
+     * valid during the callback. Returns false (after printing the error) if the file cannot be read.
+     */
+    public static boolean streamFullText(String path, Consumer<CharSequence> consumer) {
+        return streamFullText(path, Charset.defaultCharset(), consumer);
+    }
 
+    /** Same as {@link #streamFullText(String, Consumer)} with an explicit charset. */
+    public static boolean streamFullText(String path, Charset charset, Consumer<CharSequence> consumer) {
         try {
-            reader = new BufferedReader(new FileReader(filePath)); // קריאה לקובץ
-            String line; // שורת קלט
+            streamFullText(new File(path), charset, 64 * 1024, 64L * 1024 * 1024, consumer);
+            return true;
+        } catch (IOException e) {
+            System.out.println("שגיאה בקריאת קובץ: " + e.getMessage());
+            return false;
+        }
+    }
 
-            while ((line = reader.readLine()) != null) { // קריאה שורה שורה
-                 // דילוג על שורות ריקות מלכתחילה
-                 if (line.trim().isEmpty()) {
-                    continue; // דילוג על שורות ריקות
+    static void streamFullText(File file, Charset charset, int chunkChars, long windowBytes,
+                               Consumer<CharSequence> consumer) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE) // כמו FileReader
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chunk = CharBuffer.allocate(chunkChars); // אותו חוצץ משמש לכל הקטעים
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(windowBytes, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+                decodeWindow(decoder, window, last, chunk, consumer);
+                // בתים של תו שנחתך בסוף החלון נקראים שוב בתחילת החלון הבא
+                position += window.position();
+                if (!last && window.position() == 0) {
+                    throw new IOException("חלון המיפוי קטן מדי");
                 }
+            }
+            if (size == 0) {
+                decodeWindow(decoder, ByteBuffer.allocate(0), true, chunk, consumer);
+            }
+        }
+    }
 
-                if (line.startsWith("מסכת ")) { // אם השורה מתחילה ב: מסכת
-                    if (currentMasechet != null && pageContent.length() > 0) {  // אם יש תוכן לדף 
-                        savePageToFile(currentMasechet, currentDaf, currentAmud, pageContent.toString()); // שמירת תיקייה חדשה בשם המסכת
-                        pageContent.setLength(0); // איפוס משתנה תוכן הדף 
-                    }
-
-                    if (!line.contains("פרק")) { // בדיקה שהמילה "פרק" מופיעה בשורה
-                        System.out.println("שגיאה: שורת מסכת לא תקינה, חסרה המילה 'פרק': " + line);
-                        continue; // דלג על השורה הזו
-                    }
-
-                    String[] parts = line.split(" "); // פיצול השורה לפי רווחים
-                    if (parts.length > 1) { // אם יש יותר ממילה אחת
-                        StringBuilder masechetNameBuilder = new StringBuilder();
-                    
-                        // אוסף את שם המסכת (עד 2 מילים)
-                        int i = 1; // מתחיל מהמילה אחרי מסכת
-                        int wordCount = 0;
-
-                        while (i < parts.length && wordCount < 2 && !parts[i].equals("פרק")) {
-                            if (wordCount > 0) {
-                                masechetNameBuilder.append(" ");
-                            }
-                            masechetNameBuilder.append(parts[i]);
-                            i++;
-                            wordCount++;
-                        }
-
-                        currentMasechet = masechetNameBuilder.toString().trim().replaceAll("[^א-תa-zA-Z0-9 ]", "").toLowerCase();
-                    }
-                    
-                    // הוסף את שורת המסכת לתוכן הדף
-                    pageContent.append(line).append("\n");
-                }
+    private static void decodeWindow(CharsetDecoder decoder, ByteBuffer window, boolean last, CharBuffer chunk,
+                                     Consumer<CharSequence> consumer) throws IOException {
+        while (true) {
+            CoderResult result = decoder.decode(window, chunk, last);
+            if (result.isOverflow()) {
+                flushChunk(chunk, consumer);
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        if (last) {
+            while (decoder.flush(chunk).isOverflow()) {
+                flushChunk(chunk, consumer);
+            }
+            flushChunk(chunk, consumer);
+            decoder.reset();
+        }
+    }
 
-                // אם זו שורת דף
-                else if (line.startsWith("דף")) {
-                    String[] parts = line.split(" ");
-                    int newDaf = -1;
-                    char newAmud = ' ';
-                    try {
-                        newDaf = DataIndex.hebrewToNumber(parts[1].trim());
-                        newAmud = parts[2].trim().charAt(0);
-                    } catch (Exception e) {
-                        // parsing error, keep defaults
-                    }
-                    // only save & reset if switching to a different daf/amud
-                    if ((newDaf != currentDaf || newAmud != currentAmud) && currentMasechet != null && pageContent.length() > 0) {
-                        savePageToFile(currentMasechet, currentDaf, currentAmud, pageContent.toString());
-                        pageContent.setLength(0);
-                    }
+    private static void flushChunk(CharBuffer chunk, Consumer<CharSequence> consumer) {
+        chunk.flip();
+        if (chunk.hasRemaining()) {
+            consumer.accept(chunk);
+        }
+        chunk.clear();
+    }
 
-                
-                    currentDaf = newDaf; // עדכון הדף הנוכחי
-                    currentAmud = (newAmud == 'א' || newAmud == 'ב') ? newAmud : 'א';
-                    System.out.println(">>> דף: " + currentDaf + ", עמוד: " + currentAmud);
-                    
-                    // הוסף את שורת הדף לתוכן הדף
-                    pageContent.append(line).append("\n");
-                } else {
-                    pageContent.append(line).append("\n");
-                }
-            }
+    /** Splits the main Talmud text file into {@code pages/}&lt;tractate&gt;/&lt;daf&gt;/alef.txt and bet.txt. */
+    public static void splitFile (String filePath) {
+        File pagesDir = AppConfig.dataFile("pages");
+        SplitState state = new SplitState(); // מצב הפיצול: מסכת, דף ועמוד נוכחיים ותוכן הדף
 
-            // שמירה אחרונה
-            if (currentMasechet != null && pageContent.length() > 0) {
-                savePageToFile(currentMasechet, currentDaf, currentAmud, pageContent.toString());
-            }
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) { // קריאה לקובץ
+            splitLines(reader, state, (masechet, daf, amud, content) -> {
+                File file = savePageToFile(pagesDir, masechet, daf, amud, content);
+                if (file != null) System.out.println("נשמר: " + file.getPath());
+            }, true);
 
             System.out.println("פיצול הסתיים");
+            SplitManifest.discard(); // פיצול מלא לא עוקב אחרי גיבובים - העדכון המצטבר הבא יחשב אותם מחדש
+            PackedCorpus.pack(); // אריזת הדפים לקובץ יחיד לקריאה מהירה
+            DataIndex.unloadAll(); // הקורפוס נכתב מחדש - המסכתות ייטענו שוב לפי דרישה
 
         } catch (IOException e) {
             System.out.println("שגיאה בקריאה: " + e.getMessage());
@@ -118,65 +135,324 @@ public class FileManager {
         } catch (Exception e) {
             System.out.println("שגיאה כללית: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            try {
-                if (reader != null) reader.close();
-            } catch (IOException e) {
-                System.out.println("שגיאה בסגירה.");
+        }
+    }
+
+    /**
+     * Splits the main file on all cores: tractate boundaries are found in a quick first pass and
+     * each tractate's byte range is parsed and written by a worker. Output is identical to {@link #splitFile}.
+     */
+    public static void splitFileParallel(String filePath) {
+        try {
+            ParallelSplitter.split(new File(filePath), AppConfig.dataFile("pages"), Runtime.getRuntime().availableProcessors());
+            SplitManifest.discard();
+            PackedCorpus.pack(); // אריזת הדפים לקובץ יחיד לקריאה מהירה
+            DataIndex.unloadAll(); // הקורפוס נכתב מחדש - המסכתות ייטענו שוב לפי דרישה
+        } catch (IOException e) {
+            System.out.println("שגיאה בקריאה: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Incremental re-split: rewrites, adds or deletes only the amudim whose content changed since the
+     * last split, then evicts exactly those pages from the cache and re-indexes only the changed tractates.
+     * The packed corpus is not rebuilt: the changed amudim are marked stale in it and read from their files
+     * until the next explicit {@link #packPages()}.
+     *
+     * @return the changed page keys, or null if the source could not be read
+     */
+    public static SplitManifest.ChangeSet splitFileIncremental(String filePath) {
+        try {
+            long start = System.currentTimeMillis();
+            SplitManifest.ChangeSet changes = SplitManifest.resplit(new File(filePath), AppConfig.dataFile("pages"),
+                                                                   AppConfig.dataFile(SplitManifest.MANIFEST_FILE));
+            if (!changes.isEmpty()) {
+                PackedCorpus pack = PackedCorpus.get();
+                for (String key : changes.allKeys()) {
+                    if (pack != null) pack.markStale(key); // נקרא מהקובץ עד האריזה הבאה - בלי לארוז את כל הקורפוס
+                    CacheManager.remove(key); // פינוי רק של הדפים שהשתנו
+                }
+                DataIndex.reindexMasechtot(changes.changedMasechtot);
             }
+            System.out.println("עדכון מצטבר הסתיים ב-" + (System.currentTimeMillis() - start) + " מ\"ש: " + changes);
+            return changes;
+        } catch (IOException e) {
+            System.out.println("שגיאה בעדכון מצטבר: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Packs {@code pages/} into {@link PackedCorpus#PACK_FILE} again, folding in amudim changed since the last pack. */
+    public static void packPages() {
+        long start = System.currentTimeMillis();
+        if (PackedCorpus.pack()) {
+            DataIndex.refreshFingerprint(); // התוכן לא השתנה - האינדקס נשאר, רק הטביעה של הקורפוס
+            System.out.println("אריזה הסתיימה ב-" + (System.currentTimeMillis() - start) + " מ\"ש");
+        }
+    }
+
+    /** Trains the page dictionary on {@code pages/} and rewrites the tree in compressed form. */
+    public static void compressPages() {
+        try {
+            long start = System.currentTimeMillis();
+            int count = PageCodec.compressTree();
+            DataIndex.refreshFingerprint(); // הקבצים נכתבו מחדש באותו תוכן
+            System.out.println("דחיסה הסתיימה: " + count + " עמודים ב-" + (System.currentTimeMillis() - start) + " מ\"ש");
+            System.out.println("לשמירת עמודים חדשים בצורה דחוסה יש להגדיר " + PageCodec.COMPRESS_SETTING + "=true בקובץ " + AppConfig.CONFIG_FILE);
+        } catch (IOException e) {
+            System.out.println("שגיאה בדחיסת הדפים: " + e.getMessage());
+        }
+    }
+
+    /** Receives each amud produced while splitting the main file. */
+    interface PageSink {
+        void save(String masechet, int daf, char amud, String content) throws IOException;
+    }
+
+    /** Parser state carried from line to line (and from chunk to chunk in a parallel split). */
+    static class SplitState {
+        String masechet = null; // מסכת נוכחית
+        int daf = -1; // דף נוכחי
+        char amud = ' '; // עמוד נוכחי
+        final StringBuilder content = new StringBuilder(); // תוכן הדף הנוכחי
+
+        int headerDaf; // הדף שנקרא משורת ה"דף" האחרונה
+        char headerAmud; // העמוד שנקרא משורת ה"דף" האחרונה
+
+        /** Parses a "דף" line into {@link #headerDaf}/{@link #headerAmud}, keeping defaults on malformed input. */
+        void parseDafHeader(String line) {
+            headerDaf = -1;
+            headerAmud = ' ';
+            // "דף <מספר> <עמוד>" - קריאה במקום, בלי פיצול השורה
+            int first = line.indexOf(' ');
+            if (first < 0) return; // parsing error, keep defaults
+            int second = line.indexOf(' ', first + 1);
+            headerDaf = Gematria.parse(line, first + 1, second < 0 ? line.length() : second);
+            if (second < 0) return;
+            int third = line.indexOf(' ', second + 1);
+            int end = third < 0 ? line.length() : third;
+            int start = second + 1;
+            while (start < end && line.charAt(start) <= ' ') start++;
+            if (start < end) headerAmud = line.charAt(start);
+        }
+
+        /** Moves the current page to the last parsed "דף" header. */
+        void enterHeaderPage() {
+            daf = headerDaf; // עדכון הדף הנוכחי
+            amud = (headerAmud == 'א' || headerAmud == 'ב') ? headerAmud : 'א';
         }
     }
 
-    private static void savePageToFile(String masechet, int daf, char amud, String content) throws IOException { // שמירת העמודים לקבצים
+    /** @return the normalized tractate name of a "מסכת ... פרק" line, or null if the line does not name one */
+    static String masechetNameOf(String line) {
+        if (!line.contains("פרק")) {
+            return null;
+        }
+        String[] parts = line.split(" "); // פיצול השורה לפי רווחים
+        if (parts.length <= 1) {
+            return null;
+        }
+        StringBuilder masechetNameBuilder = new StringBuilder();
+
+        // אוסף את שם המסכת (עד 2 מילים)
+        int i = 1; // מתחיל מהמילה אחרי מסכת
+        int wordCount = 0;
+
+        while (i < parts.length && wordCount < 2 && !parts[i].equals("פרק")) {
+            if (wordCount > 0) {
+                masechetNameBuilder.append(" ");
+            }
+            masechetNameBuilder.append(parts[i]);
+            i++;
+            wordCount++;
+        }
+
+        return TractateIds.normalize(masechetNameBuilder.toString().trim());
+    }
+
+    /** Parses lines of the main file into amudim, handing every finished amud to {@code sink}. */
+    static void splitLines(BufferedReader reader, SplitState state, PageSink sink, boolean verbose) throws IOException {
+        StringBuilder pageContent = state.content;
+        String line; // שורת קלט
+
+        while ((line = reader.readLine()) != null) { // קריאה שורה שורה
+             // דילוג על שורות ריקות מלכתחילה
+             if (line.trim().isEmpty()) {
+                continue; // דילוג על שורות ריקות
+            }
+
+            if (line.startsWith("מסכת ")) { // אם השורה מתחילה ב: מסכת
+                if (state.masechet != null && pageContent.length() > 0) {  // אם יש תוכן לדף 
+                    sink.save(state.masechet, state.daf, state.amud, pageContent.toString()); // שמירת תיקייה חדשה בשם המסכת
+                    pageContent.setLength(0); // איפוס משתנה תוכן הדף 
+                }
+
+                if (!line.contains("פרק")) { // בדיקה שהמילה "פרק" מופיעה בשורה
+                    System.out.println("שגיאה: שורת מסכת לא תקינה, חסרה המילה 'פרק': " + line);
+                    continue; // דלג על השורה הזו
+                }
+
+                String name = masechetNameOf(line);
+                if (name != null) {
+                    state.masechet = name;
+                }
+                
+                // הוסף את שורת המסכת לתוכן הדף
+                pageContent.append(line).append("\n");
+            }
+
+            // אם זו שורת דף
+            else if (line.startsWith("דף")) {
+                state.parseDafHeader(line);
+                // only save & reset if switching to a different daf/amud
+                if ((state.headerDaf != state.daf || state.headerAmud != state.amud) && state.masechet != null && pageContent.length() > 0) {
+                    sink.save(state.masechet, state.daf, state.amud, pageContent.toString());
+                    pageContent.setLength(0);
+                }
+
+                state.enterHeaderPage();
+                if (verbose) {
+                    System.out.println(">>> דף: " + state.daf + ", עמוד: " + state.amud);
+                }
+                
+                // הוסף את שורת הדף לתוכן הדף
+                pageContent.append(line).append("\n");
+            } else {
+                pageContent.append(line).append("\n");
+            }
+        }
+
+        // שמירה אחרונה
+        if (state.masechet != null && pageContent.length() > 0) {
+            sink.save(state.masechet, state.daf, state.amud, pageContent.toString());
+            pageContent.setLength(0);
+        }
+    }
+
+    /** Writes one amud under {@code pagesDir}; returns the written file, or null for pages below daf 2. */
+    static File savePageToFile(File pagesDir, String masechet, int daf, char amud, String content) throws IOException { // שמירת העמודים לקבצים
         
         if (daf < 2) { // אם הדף הוא 1 (א') או מספר שלילי, לא שומרים אותו בכלל
-            return;
+            return null;
         }
         
         String amudName = (amud == 'א') ? "alef" : "bet"; 
-        String dirPath = "pages/" + masechet + "/" + daf;
-        File dir = new File(dirPath); // יצירת אובייקט תיקייה
+        File dir = new File(pagesDir, masechet + "/" + daf); // יצירת אובייקט תיקייה
         if (!dir.exists()) dir.mkdirs(); // יצירת התיקייה אם היא לא קיימת
 
-        File file = new File(dirPath + "/" + amudName + ".txt"); // יצירת אובייקט קובץ
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) { // קריאה לכתיבה לקובץ
-            writer.write(content); // כתיבת התוכן לקובץ
-        }
-
-        System.out.println("נשמר: " + file.getPath());
+        return PageCodec.writeAmud(dir, amudName, content); // כתיבה רגילה או דחוסה לפי ההגדרות
     }
 
-    /** Loads a single page from {@code pages/}&lt;masechet&gt;/&lt;daf&gt;/alef.txt or bet.txt; uses cache. */
+    /** Loads a single page from {@code pages/}&lt;masechet&gt;/&lt;daf&gt;/alef.txt or bet.txt (or their compressed form); uses cache. */
     public static String loadPage(String masechet, int daf, char amud) {
-        // המרה של עמודים ממספר לאות (1->'א', 2->'ב')
-        if (amud == '1') amud = 'א';
-        else if (amud == '2') amud = 'ב';
-        String amudName = (amud == 'א') ? "alef" : "bet"; // המרה של עמודים לאותיות
-        String safeMasechet = masechet.replaceAll("[^א-תa-zA-Z0-9 ]", "").toLowerCase(); // שמירה על רווחים כדי לתמוך בשמות מסכת המורכבים משתי מילים
-        String key = safeMasechet + "_" + daf + "_" + amudName; // יצירת מפתח ייחודי לדף
-        String path = "pages/" + safeMasechet + "/" + daf + "/" + amudName + ".txt"; // יצירת נתיב לקובץ
-        System.out.println(" טוען נתיב " + path); // הדפסה לצורך איתור בעיות
+        long pageKey = PageKey.of(masechet, daf, amud); // מזהה מסכת מהמילון - בלי ביטוי רגולרי ובלי נתיב בכל קריאה
+        if (pageKey == PageKey.MISSING) return ""; // מסכת שאינה בקורפוס
+
+        CacheBenchmark.record(pageKey); // רק כשמוגדר bavli.cache.trace
+        PagePrefetcher.recordAccess(PageKey.tractateId(pageKey), daf, PageKey.amud(pageKey)); // זיהוי קריאה רציפה וטעינה מוקדמת של העמודים הבאים
+        return readPage(pageKey);
+    }
+
+    /** Same as {@link #readPage(long)} for a normalized tractate name and "alef"/"bet". */
+    static String readPage(String safeMasechet, int daf, String amudName) {
+        int id = TractateIds.lookup(safeMasechet);
+        return id < 0 ? "" : readPage(PageKey.of(id, daf, "bet".equals(amudName) ? 1 : 0));
+    }
+
+    /**
+     * Cache, pack or tree lookup behind {@link #loadPage}; does not record the access or print. Concurrent
+     * requests for the same amud share a single read, and a cache hit allocates nothing.
+     */
+    static String readPage(long pageKey) {
+        if (pageKey == PageKey.MISSING) return "";
+        String content = CacheManager.get(pageKey, STORAGE_LOADER); // קריאה מהאחסון רק אם הדף לא במטמון
+        return content == null ? "" : content; // קובץ שלא קיים מוחזר כמחרוזת ריקה
+    }
+
+    private static final LongFunction<String> STORAGE_LOADER = FileManager::loadFromStorage;
+
+    private static String loadFromStorage(long pageKey) {
+        long start = System.nanoTime();
+        String result = readFromStorage(TractateIds.name(PageKey.tractateId(pageKey)), PageKey.daf(pageKey),
+                PageKey.amudName(pageKey), CacheManager.cacheKey(pageKey));
+        CacheManager.recordLoad(System.nanoTime() - start, result != null); // זמן הטעינה לסטטיסטיקות המטמון
+        return result;
+    }
 
-        if (CacheManager.contains(key)) { // בדיקה אם הדף כבר קיים במטמון
-            return CacheManager.get(key); // החזרת התוכן מהמטמון
+    /** Reads a page from the packed corpus or the {@code pages/} tree; null if it is missing or unreadable. */
+    private static String readFromStorage(String safeMasechet, int daf, String amudName, String key) {
+        PackedCorpus pack = PackedCorpus.get(); // קריאה מהקובץ הארוז אם קיים - ללא פתיחת קובץ לכל עמוד
+        if (pack != null) {
+            String packed = pack.read(key);
+            if (packed != null) {
+                return packed;
+            }
         }
+        try {
+            return PageCodec.readAmud(new File(AppConfig.dataFile("pages"), safeMasechet + "/" + daf), amudName); // קובץ רגיל או דחוס
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Loads a page on the background I/O pool ({@code bavli.io.threads} daemon threads, default up to 4).
+     * The future completes with the same text {@link #loadPage} returns ("" if the page does not exist).
+     */
+    public static CompletableFuture<String> loadPageAsync(String masechet, int daf, char amud) {
+        return CompletableFuture.supplyAsync(() -> loadPage(masechet, daf, amud), ioPool());
+    }
 
-        File file = new File(path); // יצירת אובייקט קובץ
-        if (!file.exists()) { // בדיקה אם הקובץ לא קיים
-            return "";
+    /**
+     * Loads every amud from {@code fromDaf} alef to {@code toDaf} bet concurrently and returns them in
+     * order (alef before bet); missing amudim are returned as "".
+     */
+    public static List<String> loadPages(String masechet, int fromDaf, int toDaf) {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int daf = fromDaf; daf <= toDaf; daf++) {
+            futures.add(loadPageAsync(masechet, daf, 'א'));
+            futures.add(loadPageAsync(masechet, daf, 'ב'));
         }
+        List<String> pages = new ArrayList<>(futures.size());
+        for (CompletableFuture<String> future : futures) {
+            pages.add(future.join()); // loadPage לא זורקת - שגיאות מוחזרות כמחרוזת ריקה
+        }
+        return pages;
+    }
+
+    private static volatile ExecutorService ioPool; // מאגר תהליכונים לקריאת דפים ברקע
 
+    static ExecutorService ioPool() {
+        ExecutorService pool = ioPool;
+        if (pool == null) {
+            synchronized (FileManager.class) {
+                pool = ioPool;
+                if (pool == null) {
+                    int threads = Math.max(1, AppConfig.getInt("bavli.io.threads",
+                            Math.min(4, Runtime.getRuntime().availableProcessors())));
+                    AtomicInteger counter = new AtomicInteger();
+                    pool = Executors.newFixedThreadPool(threads, runnable -> {
+                        Thread thread = new Thread(runnable, "bavli-io-" + counter.incrementAndGet());
+                        thread.setDaemon(true); // לא מונע את סגירת התוכנית
+                        return thread;
+                    });
+                    ioPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /** Reads an amud file line by line, normalizing line endings to {@code \n}. */
+    static String readPageFile(File file) throws IOException {
         StringBuilder content = new StringBuilder(); // יצירת מחרוזת ריקה לאחסון תוכן הקובץ
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) { // קריאה לקובץ
             String line; // משתנה לאחסון שורות
             while ((line = reader.readLine()) != null) { // כל עוד יש שורות לקרוא
                 content.append(line).append("\n"); // הוספת השורה למחרוזת התוכן
             }
-        } catch (IOException e) {
-            return "";
         }
-        String result = content.toString(); // המרת התוכן למחרוזת 
-        CacheManager.put(key, result); // שמירת התוכן במטמון
-        return result; // החזרת התוכן המלא של הקובץ כמחרוזת
+        return content.toString();
     }
 }
\ No newline at end of file
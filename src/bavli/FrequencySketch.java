@@ -0,0 +1,75 @@
+package bavli;
+
+/**
+ * Count-min sketch of 4-bit counters estimating how often each key was accessed recently, used by the
+ * TinyLFU admission policy in {@link PageCache}. Every {@code 10 * capacity} increments all counters are
+ * halved, so old popularity fades. Not thread-safe; {@link PageCache} uses it under its eviction lock.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = { // זרעים לארבע פונקציות הגיבוב
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L; // חצי מכל מונה בן 4 ביטים
+
+    private long[] table = new long[0];
+    private int sampleSize;
+    private int additions; // הגדלות מאז האיפוס האחרון
+
+    /** Sizes the sketch for about {@code capacity} distinct entries; existing counts are dropped if it grows. */
+    void ensureCapacity(long capacity) {
+        int length = (int) Math.min(1 << 20, Long.highestOneBit(Math.max(16, capacity) - 1) << 1); // חזקה של 2
+        if (length <= table.length) return;
+        table = new long[length];
+        sampleSize = (int) Math.min(Integer.MAX_VALUE / 2, 10L * Math.max(16, capacity));
+        additions = 0;
+    }
+
+    /** @return estimated access count of the key, 0..15 */
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            long slot = slot(hash, i);
+            int index = (int) (slot & (table.length - 1));
+            int shift = (int) ((slot >>> 32) & 15) << 2;
+            frequency = Math.min(frequency, (int) ((table[index] >>> shift) & 0xF));
+        }
+        return frequency;
+    }
+
+    /** Counts one access of the key, aging the whole sketch when the sample period ends. */
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            long slot = slot(hash, i);
+            int index = (int) (slot & (table.length - 1));
+            int shift = (int) ((slot >>> 32) & 15) << 2;
+            if (((table[index] >>> shift) & 0xF) < 15) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /** Halves every counter. */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static long slot(int hash, int depth) {
+        long h = (hash + SEEDS[depth]) * SEEDS[depth];
+        return h ^ (h >>> 29);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
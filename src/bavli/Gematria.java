@@ -0,0 +1,122 @@
+package bavli;
+
+/**
+ * Hebrew numerals (גימטריה) for daf and perek numbers. {@link #parse} reads a numeral from a range of any
+ * {@link CharSequence} through a letter-value table without allocating: letters in descending order (ת may
+ * repeat), the טו/טז forms, final letters, geresh/gershayim or ASCII quotes anywhere (כ"ב, ט׳), and a geresh
+ * before further letters as a thousands separator (ה'תשפ"ו = 5786). {@link #numberToHebrew} is its inverse.
+ */
+public class Gematria {
+
+    private static final char FIRST_LETTER = 'א';
+    // ערך כל אות מ-א עד ת, כולל אותיות סופיות
+    private static final int[] VALUES = {
+        1, 2, 3, 4, 5, 6, 7, 8, 9,          // א-ט
+        10, 20, 20, 30, 40, 40, 50, 50,     // י כ ך ל ם מ ן נ (סופיות לפני הרגילות)
+        60, 70, 80, 80, 90, 90,             // ס ע ף פ ץ צ
+        100, 200, 300, 400                  // ק-ת
+    };
+    private static final String UNITS = " אבגדהוזחט";
+    private static final String TENS = " יכלמנסעפצ";
+    private static final String HUNDREDS = " קרשת";
+
+    /** @return the value of the numeral in {@code text}, ignoring surrounding whitespace; 0 if it is not a valid numeral */
+    public static int parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /** @return the value of the numeral in {@code text[start, end)}, ignoring surrounding whitespace; 0 if invalid */
+    public static int parse(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        int thousands = 0;
+        int value = 0;
+        int previous = Integer.MAX_VALUE; // ערך האות הקודמת בקבוצה
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isGeresh(c)) {
+                if (value > 0 && nextLetter(text, i + 1, end) >= 0) { // ה'תשפ"ו - מה שלפני הגרש הוא אלפים
+                    if (thousands > 0) return 0;
+                    thousands = value;
+                    value = 0;
+                    previous = Integer.MAX_VALUE;
+                }
+                continue;
+            }
+            if (c == '"' || c == '״') continue; // גרשיים
+            int letter = valueOf(c);
+            if (letter == 0) return 0;
+            if (!follows(previous, letter, value, text, i + 1, end)) return 0;
+            value += letter;
+            previous = letter;
+        }
+        return thousands * 1000 + value;
+    }
+
+    /**
+     * Reads the numeral in the first whitespace-delimited word at or after {@code from}, e.g. the chapter after
+     * "פרק " in a header line.
+     * @return its value, or 0 if there is no word or it is not a valid numeral
+     */
+    public static int parseWord(CharSequence text, int from) {
+        int length = text.length();
+        int start = Math.min(Math.max(0, from), length);
+        while (start < length && Character.isWhitespace(text.charAt(start))) start++;
+        int end = start;
+        while (end < length && !Character.isWhitespace(text.charAt(end))) end++;
+        return start == end ? 0 : parse(text, start, end);
+    }
+
+    /**
+     * @return the numeral for a positive number without punctuation (טו, קעו, ה'תשפו), or "" if {@code n <= 0};
+     *         an exact multiple of 1000 (ה') reads back through {@link #parse} as its units, like ט' = 9
+     */
+    public static String numberToHebrew(int n) {
+        if (n <= 0) return "";
+        StringBuilder result = new StringBuilder();
+        if (n >= 1000) {
+            result.append(numberToHebrew(n / 1000)).append('\'');
+            n %= 1000;
+        }
+        int hundreds = n / 100;
+        for (; hundreds >= 4; hundreds -= 4) result.append('ת');
+        if (hundreds > 0) result.append(HUNDREDS.charAt(hundreds));
+        int rest = n % 100;
+        if (rest == 15 || rest == 16) { // לא כותבים יה/יו
+            result.append('ט').append(UNITS.charAt(rest - 9));
+            return result.toString();
+        }
+        if (rest / 10 > 0) result.append(TENS.charAt(rest / 10));
+        if (rest % 10 > 0) result.append(UNITS.charAt(rest % 10));
+        return result.toString();
+    }
+
+    /** Whether a letter may follow the previous one: descending ranks, repeated ת, or the ו/ז of טו/טז at the end. */
+    private static boolean follows(int previous, int letter, int value, CharSequence text, int next, int end) {
+        if (previous == Integer.MAX_VALUE) return true;
+        if (previous == 400) return letter <= 400; // תת, תק...
+        if (rank(letter) < rank(previous)) return true;
+        return previous == 9 && (letter == 6 || letter == 7) && value % 100 == 9 && nextLetter(text, next, end) < 0;
+    }
+
+    private static int rank(int value) {
+        return value >= 100 ? 2 : value >= 10 ? 1 : 0;
+    }
+
+    private static int valueOf(char c) {
+        int index = c - FIRST_LETTER;
+        return index >= 0 && index < VALUES.length ? VALUES[index] : 0;
+    }
+
+    private static boolean isGeresh(char c) {
+        return c == '\'' || c == '׳';
+    }
+
+    /** @return index of the next Hebrew letter in {@code text[from, end)}, or -1 */
+    private static int nextLetter(CharSequence text, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (valueOf(text.charAt(i)) > 0) return i;
+        }
+        return -1;
+    }
+}
@@ -12,6 +12,24 @@ import java.awt.Graphics2D;
  */
 public class HtmlExporter {
 
+    /** Version of the HTML templates below; bump it when the rendering changes so cached HTML is rebuilt. */
+    static final int TEMPLATE_VERSION = 1;
+
+    /** Escaped page text with line breaks, from {@link DerivedCache} while the page and template are unchanged. */
+    private static String renderPageText(String masechet, int daf, char amud, String content, String indent) {
+        String key = "html:v" + TEMPLATE_VERSION + ":" + indent.length() + ":" + TractateIds.normalize(masechet) + "_" + daf
+                     + "_" + (amud == 'א' || amud == '1' ? "alef" : "bet");
+        return DerivedCache.get(key, List.of(content), () -> escape(content, indent));
+    }
+
+    /** Escapes HTML special characters and turns line breaks into {@code <br>} followed by the indent. */
+    private static String escape(String text, String indent) {
+        return text.replace("&", "&amp;")
+                   .replace("<", "&lt;")
+                   .replace(">", "&gt;")
+                   .replace("\n", "<br>\n" + indent);
+    }
+
     /** Exports a single page to an HTML file at {@code outputPath}. */
     public static boolean exportPage(String masechet, int daf, char amud, String outputPath) {
         String content = FileManager.loadPage(masechet, daf, amud);
@@ -55,7 +73,7 @@ public class HtmlExporter {
             html.append("<html dir=\"rtl\">\n");
             html.append("<head>\n");
             html.append("  <meta charset=\"UTF-8\">\n");
-            html.append("  <title>מסכת ").append(masechet).append(" פרק ").append(perek).append("</title>\n");
+            html.append("  <title>מסכת ").append(masechet).append(" פרק ").append(Gematria.numberToHebrew(perek)).append("</title>\n");
             html.append("  <style>\n");
             html.append("    body { font-family: 'David', 'Times New Roman', serif; direction: rtl; padding: 20px; }\n");
             html.append("    h1, h2 { text-align: center; }\n");
@@ -67,20 +85,21 @@ public class HtmlExporter {
             html.append("</head>\n");
             html.append("<body>\n");
             html.append("  <h1>מסכת ").append(masechet).append("</h1>\n");
-            html.append("  <h2>פרק ").append(perek).append("</h2>\n");
+            html.append("  <h2>פרק ").append(Gematria.numberToHebrew(perek)).append("</h2>\n");
             
-            // הוספת כל המשניות
-            for (int i = 0; i < mishnayot.size(); i++) {
-                html.append("  <div class=\"mishna\">\n");
-                html.append("    <div class=\"mishna-title\">משנה ").append(i + 1).append("</div>\n");
-                html.append("    <div class=\"mishna-content\">\n");
-                html.append("      ").append(mishnayot.get(i).replace("&", "&amp;")
-                                              .replace("<", "&lt;")
-                                              .replace(">", "&gt;")
-                                              .replace("\n", "<br>\n      "));
-                html.append("\n    </div>\n");
-                html.append("  </div>\n");
-            }
+            // הוספת כל המשניות - HTML שמור כל עוד המשניות ותבנית הייצוא לא השתנו
+            html.append(DerivedCache.get("html:v" + TEMPLATE_VERSION + ":mishna:" + masechet + ":" + perek, mishnayot, () -> {
+                StringBuilder section = new StringBuilder();
+                for (int i = 0; i < mishnayot.size(); i++) {
+                    section.append("  <div class=\"mishna\">\n");
+                    section.append("    <div class=\"mishna-title\">משנה ").append(i + 1).append("</div>\n");
+                    section.append("    <div class=\"mishna-content\">\n");
+                    section.append("      ").append(escape(mishnayot.get(i), "      "));
+                    section.append("\n    </div>\n");
+                    section.append("  </div>\n");
+                }
+                return section.toString();
+            }));
             
             html.append("  <div class=\"footer\">\n");
             html.append("    יוצא באמצעות מערכת BavliManager - ").append(new java.util.Date()).append("\n");
@@ -191,7 +210,7 @@ public class HtmlExporter {
             html.append("<html dir=\"rtl\">\n");
             html.append("<head>\n");
             html.append("  <meta charset=\"UTF-8\">\n");
-            html.append("  <title>").append(masechet).append(" דף ").append(daf).append(" עמוד ").append(amud).append("</title>\n");
+            html.append("  <title>").append(masechet).append(" דף ").append(Gematria.numberToHebrew(daf)).append(" עמוד ").append(amud).append("</title>\n");
             html.append("  <style>\n");
             html.append("    body { font-family: 'David', 'Times New Roman', serif; direction: rtl; padding: 20px; }\n");
             html.append("    h1, h2 { text-align: center; }\n");
@@ -203,7 +222,7 @@ public class HtmlExporter {
             html.append("  </style>\n");
             html.append("</head>\n");
             html.append("<body>\n");
-            html.append("  <h1>מסכת ").append(masechet).append(" דף ").append(daf).append(" עמוד ").append(amud).append("</h1>\n");
+            html.append("  <h1>מסכת ").append(masechet).append(" דף ").append(Gematria.numberToHebrew(daf)).append(" עמוד ").append(amud).append("</h1>\n");
             
             // מידע על הדף
             html.append("  <div class=\"page-info\">\n");
@@ -214,10 +233,7 @@ public class HtmlExporter {
             html.append("  <div class=\"content-section\">\n");
             html.append("    <h2>תוכן הדף</h2>\n");
             html.append("    <div class=\"page-content\">\n");
-            html.append("      ").append(content.replace("&", "&amp;")
-                                             .replace("<", "&lt;")
-                                             .replace(">", "&gt;")
-                                             .replace("\n", "<br>\n      "));
+            html.append("      ").append(renderPageText(masechet, daf, amud, content, "      "));
             html.append("\n    </div>\n");
             html.append("  </div>\n");
             
@@ -297,7 +313,7 @@ public class HtmlExporter {
             html.append("<html dir=\"rtl\">\n");
             html.append("<head>\n");
             html.append("  <meta charset=\"UTF-8\">\n");
-            html.append("  <title>").append(masechet).append(" דף ").append(daf).append(" עמוד ").append(amud).append("</title>\n");
+            html.append("  <title>").append(masechet).append(" דף ").append(Gematria.numberToHebrew(daf)).append(" עמוד ").append(amud).append("</title>\n");
             html.append("  <style>\n");
             html.append("    body { font-family: 'David', 'Times New Roman', serif; direction: rtl; padding: 20px; }\n");
             html.append("    h1 { text-align: center; }\n");
@@ -306,14 +322,11 @@ public class HtmlExporter {
             html.append("  </style>\n");
             html.append("</head>\n");
             html.append("<body>\n");
-            html.append("  <h1>מסכת ").append(masechet).append(" דף ").append(daf).append(" עמוד ").append(amud).append("</h1>\n");
+            html.append("  <h1>מסכת ").append(masechet).append(" דף ").append(Gematria.numberToHebrew(daf)).append(" עמוד ").append(amud).append("</h1>\n");
             html.append("  <div class=\"page-content\">\n");
             
             // הוספת התוכן עם המרת תווים מיוחדים
-            html.append("    ").append(content.replace("&", "&amp;")
-                                           .replace("<", "&lt;")
-                                           .replace(">", "&gt;")
-                                           .replace("\n", "<br>\n    "));
+            html.append("    ").append(renderPageText(masechet, daf, amud, content, "    "));
             
             html.append("\n  </div>\n");
             html.append("  <div class=\"footer\">\n");
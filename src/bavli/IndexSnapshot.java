@@ -0,0 +1,189 @@
+package bavli;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Binary snapshot of {@link DataIndex} ({@code pages.index}), so startup reads the tractate and Mishna indexes
+ * instead of walking and reading the whole corpus. The snapshot is tied to a fingerprint of the corpus: the
+ * path, size and modification time of every file under {@code pages/} plus those of {@code pages.pack}.
+ * Collecting that costs one stat per file and no reads; any change to the corpus changes it and the indexes
+ * are rebuilt (and the snapshot rewritten).
+ * <pre>
+ * int magic "BVIX", int version, long fingerprint
+ * int tractates: { UTF name, int dafs: { int daf } }            -- or -1 if not built
+ * int tractates: { UTF name, int pages: { int daf, boolean hasMishna, int perek },
+ *                 int starts: { long position, int perek }, int lastDaf }  -- or -1 if not built
+ * </pre>
+ */
+class IndexSnapshot {
+
+    static final String SNAPSHOT_FILE = "pages.index";
+
+    /** Setting for another snapshot location (the tests use a temporary file); default {@link #SNAPSHOT_FILE}. */
+    static final String FILE_SETTING = "bavli.index.file";
+
+    private static final int MAGIC = 0x42564958; // "BVIX"
+    private static final int VERSION = 2;
+
+    /**
+     * Indexes read from a snapshot; a part is null if none of it was built when the snapshot was written, and a
+     * tractate missing from a part had not been indexed yet (tractates are indexed on first use).
+     */
+    static final class Contents {
+        Map<String, int[]> dafs;
+        Map<String, MishnaPages> mishna;
+        Map<String, PerekIndex> pereks; // קיים תמיד יחד עם mishna
+    }
+
+    /** @return fingerprint of the current {@code pages/} tree and packed corpus */
+    static long fingerprint() {
+        long[] sum = {0, 0}; // סכום חילופי - לא תלוי בסדר הסריקה
+        Path root = AppConfig.dataFile("pages").toPath();
+        if (Files.isDirectory(root)) {
+            try {
+                Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                        sum[0] += mix(root.relativize(file).toString().hashCode(), attributes.size(),
+                                      attributes.lastModifiedTime().toMillis());
+                        sum[1]++;
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                return 0; // לא ניתן לאמת - התמונה לא תתאים
+            }
+        }
+        File pack = AppConfig.dataFile(PackedCorpus.PACK_FILE);
+        if (pack.isFile()) {
+            sum[0] += mix(-1, pack.length(), pack.lastModified());
+        }
+        return mix((int) sum[1], sum[0], VERSION);
+    }
+
+    /** @return the snapshot file: {@code bavli.index.file} if set, otherwise {@link #SNAPSHOT_FILE} */
+    static File file() {
+        String path = AppConfig.get(FILE_SETTING);
+        return path == null || path.isEmpty() ? AppConfig.dataFile(SNAPSHOT_FILE) : new File(path);
+    }
+
+    /** @return the snapshot's contents if it exists and matches {@code fingerprint}, otherwise null */
+    static Contents read(long fingerprint) {
+        File file = file();
+        if (!file.isFile() || fingerprint == 0) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != fingerprint) {
+                return null; // הקורפוס השתנה מאז השמירה
+            }
+            Contents contents = new Contents();
+            int count = in.readInt();
+            if (count >= 0) {
+                contents.dafs = new LinkedHashMap<>();
+                for (int i = 0; i < count; i++) {
+                    String masechet = in.readUTF();
+                    int dafCount = in.readInt();
+                    int[] dafs = new int[dafCount];
+                    for (int j = 0; j < dafCount; j++) dafs[j] = in.readInt();
+                    contents.dafs.put(masechet, dafs);
+                }
+            }
+            count = in.readInt();
+            if (count >= 0) {
+                contents.mishna = new LinkedHashMap<>();
+                contents.pereks = new LinkedHashMap<>();
+                for (int i = 0; i < count; i++) {
+                    String masechet = in.readUTF();
+                    int pageCount = in.readInt();
+                    Map<Integer, DataIndex.PageInfo> pages = new HashMap<>();
+                    for (int j = 0; j < pageCount; j++) {
+                        int daf = in.readInt();
+                        boolean hasMishna = in.readBoolean();
+                        pages.put(daf, new DataIndex.PageInfo(hasMishna, in.readInt()));
+                    }
+                    contents.mishna.put(masechet, MishnaPages.of(pages));
+                    int startCount = in.readInt();
+                    long[] positions = new long[startCount];
+                    int[] pereks = new int[startCount];
+                    for (int j = 0; j < startCount; j++) {
+                        positions[j] = in.readLong();
+                        pereks[j] = in.readInt();
+                    }
+                    contents.pereks.put(masechet, PerekIndex.of(positions, pereks, in.readInt()));
+                }
+            }
+            return contents;
+        } catch (IOException e) {
+            System.out.println("קובץ האינדקס השמור פגום - בונים מחדש: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the indexes; {@code fingerprint} must be taken before they were built, so a corpus change during the
+     * build leaves a snapshot that no longer matches rather than one that hides the change.
+     * @param dafs tractate to dafs, or null if not built
+     * @param mishna tractate to Mishna page info, or null if not built
+     * @param pereks tractate to chapter boundaries, built together with {@code mishna}
+     */
+    static boolean write(long fingerprint, Map<String, int[]> dafs, Map<String, MishnaPages> mishna,
+                         Map<String, PerekIndex> pereks) {
+        if (fingerprint == 0) return false;
+        File file = file();
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(dafs == null ? -1 : dafs.size());
+            if (dafs != null) {
+                for (Map.Entry<String, int[]> entry : dafs.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    for (int daf : entry.getValue()) out.writeInt(daf);
+                }
+            }
+            out.writeInt(mishna == null ? -1 : mishna.size());
+            if (mishna != null) {
+                for (Map.Entry<String, MishnaPages> entry : mishna.entrySet()) {
+                    MishnaPages pages = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(pages.size());
+                    for (int daf : pages.dafs()) {
+                        out.writeInt(daf);
+                        out.writeBoolean(pages.hasMishna(daf));
+                        out.writeInt(pages.perek(daf));
+                    }
+                    PerekIndex starts = pereks != null ? pereks.get(entry.getKey()) : null;
+                    out.writeInt(starts == null ? 0 : starts.size());
+                    for (int j = 0; starts != null && j < starts.size(); j++) {
+                        out.writeLong(starts.startPosition(j));
+                        out.writeInt(starts.startPerek(j));
+                    }
+                    out.writeInt(starts == null ? 0 : starts.lastDaf());
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("שגיאה בשמירת האינדקס: " + e.getMessage());
+            temp.delete();
+            return false;
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING); // החלפה בבת אחת
+            return true;
+        } catch (IOException e) {
+            System.out.println("שגיאה בשמירת האינדקס: " + e.getMessage());
+            temp.delete();
+            return false;
+        }
+    }
+
+    private static long mix(int hash, long a, long b) {
+        long h = hash * 0x9e3779b97f4a7c15L;
+        h = (h ^ a) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ b) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,207 @@
+package bavli;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys (e.g. {@link PageKey}) to objects, so lookups
+ * neither box the key nor allocate. Reads are optimistic ({@link StampedLock}) and retry under the read lock
+ * only if a write intervened; writes are serialized. Null values are not supported.
+ */
+public class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16; // חזקה של 2
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Table table = new Table(MIN_CAPACITY); // מוחלף בשלמותו בהגדלה
+    private int size; // מוגן ע"י נעילת הכתיבה
+
+    /** Keys and values of one capacity; a slot is empty when its value is null. */
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+    }
+
+    /** @return value for the key, or null if absent */
+    public V get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        V value = find(table, key);
+        if (!lock.validate(stamp)) { // כתיבה במקביל - קריאה חוזרת תחת נעילה
+            stamp = lock.readLock();
+            try {
+                value = find(table, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /** @return the previous value for the key, or null */
+    public V put(long key, V value) {
+        if (value == null) throw new NullPointerException("value");
+        long stamp = lock.writeLock();
+        try {
+            return putLocked(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the value for the key, creating and storing it with {@code factory} if absent. The factory runs
+     * outside the lock, so under a race it may be called more than once; only one result is kept.
+     */
+    public V computeIfAbsent(long key, LongFunction<V> factory) {
+        V value = get(key);
+        if (value != null) return value;
+        V created = factory.apply(key);
+        long stamp = lock.writeLock();
+        try {
+            value = find(table, key);
+            if (value != null) return value; // נוסף בינתיים ע"י תהליכון אחר
+            putLocked(key, created);
+            return created;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private V putLocked(long key, V value) {
+        Table t = table;
+        int index = slot(t, key);
+        @SuppressWarnings("unchecked")
+        V old = (V) t.values[index];
+        if (old == null) {
+            if (2 * (size + 1) > t.keys.length) { // מקדם עומס מקסימלי 0.5
+                t = resize(t.keys.length * 2);
+                index = slot(t, key);
+            }
+            size++;
+        }
+        t.keys[index] = key;
+        t.values[index] = value;
+        return old;
+    }
+
+    /** @return the removed value, or null */
+    public V remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            Table t = table;
+            int mask = t.keys.length - 1;
+            int index = slot(t, key);
+            @SuppressWarnings("unchecked")
+            V old = (V) t.values[index];
+            if (old == null) return null;
+            // מחיקה עם הזזה אחורה - שומר על רצף הגישוש בלי סימוני מחיקה
+            int hole = index;
+            for (int next = (hole + 1) & mask; t.values[next] != null; next = (next + 1) & mask) {
+                int home = mix(t.keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    t.keys[hole] = t.keys[next];
+                    t.values[hole] = t.values[next];
+                    hole = next;
+                }
+            }
+            t.values[hole] = null;
+            t.keys[hole] = 0;
+            size--;
+            return old;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Table(MIN_CAPACITY);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** @return a sorted snapshot of the keys */
+    public long[] keys() {
+        long stamp = lock.readLock();
+        try {
+            Table t = table;
+            long[] result = new long[size];
+            int count = 0;
+            for (int i = 0; i < t.keys.length; i++) {
+                if (t.values[i] != null) result[count++] = t.keys[i];
+            }
+            Arrays.sort(result);
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V find(Table t, long key) {
+        int mask = t.keys.length - 1;
+        int index = mix(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) { // חסום - קריאה אופטימית עלולה לראות טבלה באמצע כתיבה
+            Object value = t.values[index];
+            if (value == null) return null;
+            if (t.keys[index] == key) return (V) value;
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /** @return the slot holding the key, or the empty slot where it would go */
+    private static int slot(Table t, long key) {
+        int mask = t.keys.length - 1;
+        int index = mix(key) & mask;
+        while (t.values[index] != null && t.keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private Table resize(int capacity) {
+        Table old = table;
+        Table grown = new Table(capacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.values[i] != null) {
+                int index = slot(grown, old.keys[i]);
+                grown.keys[index] = old.keys[i];
+                grown.values[index] = old.values[i];
+            }
+        }
+        table = grown;
+        return grown;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9e3779b97f4a7c15L; // גיבוב פיבונאצ'י - מפזר מפתחות ארוזים שנבדלים בביטים נמוכים
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -8,6 +8,8 @@ public class Main {
 
     /** Starts the application by displaying the main menu. */
     public static void main(String[] args) {
+        CacheWarmer.start(); // חימום המטמון ברקע מהעמודים החמים של ההפעלה הקודמת
+        PageWatcher.start(); // עדכון המטמון והאינדקס כשקבצי עמודים או הערות משתנים
         SwitchCase.displayMenu();
     }
 }
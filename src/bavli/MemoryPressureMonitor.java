@@ -0,0 +1,135 @@
+package bavli;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.NotificationEmitter;
+
+/**
+ * Shrinks the heap page cache when the JVM heap fills up and lets it grow back once the pressure clears, so
+ * the cache can be sized generously on a shared machine without running the heap into OutOfMemoryError.
+ * Heap pools that report usage after garbage collection get a collection usage threshold at
+ * {@code bavli.cache.pressure.high} of their maximum (default 0.80); crossing it halves the cache budget at once.
+ * A daemon check every {@code bavli.cache.pressure.intervalMillis} (default 2000) keeps halving after each
+ * collection that still leaves usage above that level, and doubles the budget, up to the configured one, while it is below
+ * {@code bavli.cache.pressure.low} (default 0.60). {@code bavli.cache.pressure=false} disables it.
+ */
+class MemoryPressureMonitor {
+
+    private static final long MIN_LIMIT = 1024 * 1024; // לא מצמצמים מתחת ל-1MB
+
+    private static final List<MemoryPoolMXBean> pools = new ArrayList<>();
+    private static double high;
+    private static double low;
+    private static boolean started; // מוגן ע"י MemoryPressureMonitor.class
+    private static long lastCollections = -1; // נגיש רק מתהליכון הבדיקה
+
+    /** Installs the threshold listener and starts the periodic check; called once by {@link CacheManager}. */
+    static synchronized void start() {
+        if (started || !AppConfig.getBoolean("bavli.cache.pressure", true)) return;
+        started = true;
+        high = ratio("bavli.cache.pressure.high", 0.80);
+        low = Math.min(high, ratio("bavli.cache.pressure.low", 0.60));
+        try {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                long max = pool.getUsage().getMax();
+                if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                    pool.setCollectionUsageThreshold((long) (max * high));
+                    pools.add(pool);
+                }
+            }
+            if (pools.isEmpty()) { // בלי מדידה אחרי איסוף זבל אין אות אמין ללחץ
+                System.out.println("אין מאגר זיכרון שמדווח שימוש אחרי איסוף זבל - מעקב לחץ זיכרון כבוי");
+                return;
+            }
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener((notification, handback) -> {
+                if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                    adjust(high); // התראה מה-JVM - צמצום מיידי בלי לחכות לבדיקה הבאה
+                }
+            }, null, null);
+        } catch (RuntimeException e) { // ניהול זיכרון לא זמין - המטמון נשאר בגודל הקבוע
+            System.out.println("לא ניתן לעקוב אחר לחץ זיכרון: " + e.getMessage());
+            return;
+        }
+
+        long interval = Math.max(100, AppConfig.getInt("bavli.cache.pressure.intervalMillis", 2000));
+        Thread checker = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long collections = collectionCount();
+                double usage = usageAfterGc();
+                if (usage < high || collections != lastCollections) { // צמצום נוסף רק אחרי מדידה חדשה
+                    lastCollections = collections;
+                    adjust(usage);
+                }
+            }
+        }, "bavli-memory-pressure");
+        checker.setDaemon(true); // לא מונע את סגירת התוכנית
+        checker.start();
+    }
+
+    /** Applies one shrink or grow step for the given heap usage ratio. */
+    static synchronized void adjust(double usage) {
+        long current = CacheManager.getEffectiveMaxBytes();
+        long next = nextLimit(current, CacheManager.getMaxBytes(), usage, high, low);
+        if (next != current) {
+            CacheManager.setPressureLimit(next);
+        }
+    }
+
+    /**
+     * Next cache budget: half the current one (not below 1MB) when usage is at or above {@code high}, double it
+     * (up to {@code configured}) when below {@code low}, otherwise unchanged.
+     */
+    static long nextLimit(long current, long configured, double usage, double high, double low) {
+        if (usage >= high) {
+            return Math.min(current, Math.max(Math.min(MIN_LIMIT, configured), current / 2));
+        }
+        if (usage < low && current < configured) {
+            return Math.min(configured, Math.max(MIN_LIMIT, current * 2));
+        }
+        return current;
+    }
+
+    /** Highest usage ratio among the watched pools, as measured after their last collection. */
+    private static double usageAfterGc() {
+        double usage = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            if (afterGc != null && afterGc.getMax() > 0) {
+                usage = Math.max(usage, (double) afterGc.getUsed() / afterGc.getMax());
+            }
+        }
+        return usage;
+    }
+
+    /** Total garbage collections so far; the post-GC usage only changes when this does. */
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /** @return the setting as a ratio between 0.05 and 0.99, or the default if missing or invalid */
+    private static double ratio(String key, double defaultValue) {
+        String value = AppConfig.get(key);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Math.max(0.05, Math.min(0.99, Double.parseDouble(value.trim())));
+        } catch (NumberFormatException e) {
+            System.out.println("ערך לא חוקי להגדרה " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+}
@@ -1,40 +1,85 @@
 package bavli;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Extracts Mishna text from Talmud page content for a given tractate and chapter (perek).
+ * Extracts Mishna text from Talmud page content for a given tractate and chapter (perek). Results are kept in
+ * {@link DerivedCache} until the text of one of the pages changes.
  */
 public class MishnaExtractor {
 
-    /** Returns list of Mishna text blocks for the given tractate and chapter. */
+    /**
+     * Returns list of Mishna text blocks for the given tractate and chapter. When the Mishna index knows where the
+     * chapter starts, only its amudim are read, trimmed from its header to the next chapter's header.
+     */
     public static List<String> getMishnayotOfPerek(String masechet, int perek) {
         List<String> result = new ArrayList<>();
         
-        // מציאת כל הדפים שיש בהם משניות מהפרק המבוקש
-        List<Integer> relevantDafs = DataIndex.getDafsWithMishna(masechet, perek);
-        System.out.println("נמצאו " + relevantDafs.size() + " דפים רלוונטיים במסכת " + masechet + " פרק " + perek);
-        
-        if (relevantDafs.isEmpty()) {
-            return result;
+        List<String> texts = new ArrayList<>();
+        List<PerekIndex.Span> spans = DataIndex.getPerekSpans(masechet, perek);
+        if (!spans.isEmpty()) {
+            System.out.println("נמצאו " + spans.size() + " עמודים של פרק " + perek + " במסכת " + masechet + " לפי אינדקס הפרקים");
+            List<CompletableFuture<String>> pages = new ArrayList<>();
+            for (PerekIndex.Span span : spans) {
+                pages.add(FileManager.loadPageAsync(masechet, span.daf, span.amud == 0 ? 'א' : 'ב'));
+            }
+            for (int i = 0; i < spans.size(); i++) {
+                String pageContent = pages.get(i).join();
+                texts.add(pageContent != null ? lines(pageContent, spans.get(i).fromLine, spans.get(i).toLine) : "");
+            }
+        } else {
+            // מציאת כל הדפים שיש בהם משניות מהפרק המבוקש
+            List<Integer> relevantDafs = DataIndex.getDafsWithMishna(masechet, perek);
+            System.out.println("נמצאו " + relevantDafs.size() + " דפים רלוונטיים במסכת " + masechet + " פרק " + perek);
+            
+            if (relevantDafs.isEmpty()) {
+                return result;
+            }
+            
+            // טעינת כל העמודים הרלוונטיים במקביל (א' וב' של כל דף)
+            List<CompletableFuture<String>> pages = new ArrayList<>();
+            for (int daf : relevantDafs) {
+                pages.add(FileManager.loadPageAsync(masechet, daf, 'א'));
+                pages.add(FileManager.loadPageAsync(masechet, daf, 'ב'));
+            }
+            
+            for (CompletableFuture<String> page : pages) {
+                String pageContent = page.join();
+                texts.add(pageContent != null ? pageContent : "");
+            }
         }
         
-        // עבור על כל דף רלוונטי וחלץ את המשניות
-        for (int daf : relevantDafs) {
-            // נסה למצוא משניות בשני העמודים של כל דף (א' וב')
-            for (char amud : new char[]{'א', 'ב'}) {
-                String pageContent = FileManager.loadPage(masechet, daf, amud);
-                if (pageContent != null && !pageContent.isEmpty()) {
-                    List<String> pageResults = extractMishnayotFromText(pageContent, perek);
-                    result.addAll(pageResults);
+        // חילוץ המשניות לפי סדר הדפים - או תוצאה שמורה אם תוכן הדפים לא השתנה
+        List<String> mishnayot = DerivedCache.get("mishna:" + masechet + ":" + perek, texts, () -> {
+            List<String> extracted = new ArrayList<>();
+            for (String pageContent : texts) {
+                if (!pageContent.isEmpty()) {
+                    extracted.addAll(extractMishnayotFromText(pageContent, perek));
                 }
             }
-        }
-        
+            return Collections.unmodifiableList(extracted);
+        });
+        result.addAll(mishnayot); // עותק - הרשימה השמורה לא משתנה ע"י הקוראים
         return result;
     }
     
-   
+    /** @return lines {@code from} (inclusive) to {@code to} (exclusive) of the text */
+    private static String lines(String text, int from, int to) {
+        int start = 0;
+        for (int line = 0; line < from && start >= 0; line++) {
+            start = text.indexOf('\n', start);
+            if (start >= 0) start++;
+        }
+        if (start < 0) return "";
+        int end = start;
+        for (int line = from; line < to && end >= 0; line++) {
+            end = text.indexOf('\n', end);
+            if (end >= 0) end++;
+        }
+        return end < 0 ? text.substring(start) : text.substring(start, end);
+    }
+    
     private static List<String> extractMishnayotFromText(String pageContent, int targetPerek) { // מחלץ משניות מטקסט
         List<String> mishnayot = new ArrayList<>();
         StringBuilder currentMishna = null;
@@ -52,12 +97,8 @@ public class MishnaExtractor {
                 // ניסיון לחלץ את מספר הפרק
                 int perekIndex = line.indexOf("פרק");
                 if (perekIndex >= 0 && perekIndex + 4 < line.length()) {
-                    String afterPerek = line.substring(perekIndex + 4).trim();
-                    String[] parts = afterPerek.split("\\s+");
-                    if (parts.length > 0) {
-                        currentPerek = DataIndex.hebrewToNumber(parts[0]);
-                        System.out.println("נמצא פרק " + currentPerek + " בטקסט");
-                    }
+                    currentPerek = Gematria.parseWord(line, perekIndex + 4);
+                    System.out.println("נמצא פרק " + currentPerek + " בטקסט");
                 }
             }
             
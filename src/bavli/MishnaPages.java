@@ -0,0 +1,94 @@
+package bavli;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Mishna/chapter info of one tractate's dafs, packed into one {@code int} per daf from the first daf with
+ * info to the last: bit 0 marks a daf that has info, bit 1 that it contains a Mishna, and the remaining bits
+ * hold the chapter plus one (0 when the chapter is unknown). Lookups are a single array read instead of a
+ * boxed {@code HashMap} lookup. Immutable.
+ */
+final class MishnaPages {
+
+    private static final int PRESENT = 1;
+    private static final int HAS_MISHNA = 2;
+    private static final int PEREK_SHIFT = 2;
+
+    private final int firstDaf;
+    private final int[] packed; // packed[daf - firstDaf]
+    private final int size;
+
+    private MishnaPages(int firstDaf, int[] packed, int size) {
+        this.firstDaf = firstDaf;
+        this.packed = packed;
+        this.size = size;
+    }
+
+    /** Packs per-daf info collected while scanning a tractate. */
+    static MishnaPages of(Map<Integer, DataIndex.PageInfo> pages) {
+        if (pages.isEmpty()) return new MishnaPages(0, new int[0], 0);
+        int first = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+        for (int daf : pages.keySet()) {
+            first = Math.min(first, daf);
+            last = Math.max(last, daf);
+        }
+        int[] packed = new int[last - first + 1];
+        for (Map.Entry<Integer, DataIndex.PageInfo> entry : pages.entrySet()) {
+            DataIndex.PageInfo info = entry.getValue();
+            packed[entry.getKey() - first] = PRESENT | (info.hasMishna ? HAS_MISHNA : 0)
+                                             | (Math.max(0, info.perek + 1) << PEREK_SHIFT);
+        }
+        return new MishnaPages(first, packed, pages.size());
+    }
+
+    /** @return whether the daf has Mishna or chapter info */
+    boolean contains(int daf) {
+        return (at(daf) & PRESENT) != 0;
+    }
+
+    boolean hasMishna(int daf) {
+        return (at(daf) & HAS_MISHNA) != 0;
+    }
+
+    /** @return the daf's chapter, or -1 if unknown */
+    int perek(int daf) {
+        return (at(daf) >>> PEREK_SHIFT) - 1;
+    }
+
+    /** @return number of dafs with info */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** @return the dafs with info, ascending */
+    int[] dafs() {
+        int[] dafs = new int[size];
+        int count = 0;
+        for (int i = 0; i < packed.length; i++) {
+            if ((packed[i] & PRESENT) != 0) dafs[count++] = firstDaf + i;
+        }
+        return dafs;
+    }
+
+    private int at(int daf) {
+        int index = daf - firstDaf;
+        return index >= 0 && index < packed.length ? packed[index] : 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MishnaPages && firstDaf == ((MishnaPages) other).firstDaf
+               && Arrays.equals(packed, ((MishnaPages) other).packed);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * firstDaf + Arrays.hashCode(packed);
+    }
+}
@@ -0,0 +1,354 @@
+package bavli;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Packed single-file corpus: all amudim of {@code pages/} stored back to back in one data file,
+ * preceded by an offset table keyed by (masechet, daf, amud). The file is read through a
+ * {@link MappedByteBuffer}, so page loads and full scans cost no per-page file system calls.
+ * Amudim changed in {@code pages/} after packing are read from their files instead: those changed while the
+ * pack is open are reported through {@link #markStale}, and those changed while it was closed are found by
+ * one stat of every amud when it is opened.
+ */
+public class PackedCorpus {
+
+    /** Default location of the packed corpus, next to the {@code pages/} directory. */
+    public static final String PACK_FILE = "pages.pack";
+
+    private static final int MAGIC = 0x4256504B; // "BVPK"
+    private static final int VERSION = 1;
+
+    private static volatile PackedCorpus instance; // הקובץ הארוז הפתוח כרגע (אם קיים)
+
+    private final MappedByteBuffer data;
+    private final File pagesDir; // תיקיית הדפים שממנה נארז - לקריאת עמודים שהשתנו
+    private final Map<String, Entry> entries = new HashMap<>(); // מפתח דף -> מיקום בקובץ
+    private final Map<String, List<Entry>> byMasechet = new TreeMap<>(); // מסכת -> עמודים לפי סדר
+    private long packedAt; // זמן השינוי של הקובץ הארוז
+    private final Set<String> stale = java.util.concurrent.ConcurrentHashMap.newKeySet(); // עמודים ששונו בדיסק אחרי האריזה
+    private final Set<String> staleMasechtot = java.util.concurrent.ConcurrentHashMap.newKeySet(); // מסכתות שנוספו להן עמודים
+
+    /** Location of one amud inside the data region. */
+    public static class Entry {
+        final String masechet;
+        final int daf;
+        final String amudName;
+        final int offset;
+        final int length;
+
+        Entry(String masechet, int daf, String amudName, int offset, int length) {
+            this.masechet = masechet;
+            this.daf = daf;
+            this.amudName = amudName;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public String getMasechet() {
+            return masechet;
+        }
+
+        public int getDaf() {
+            return daf;
+        }
+
+        /** @return "alef" or "bet" */
+        public String getAmudName() {
+            return amudName;
+        }
+    }
+
+    private PackedCorpus(MappedByteBuffer data, File pagesDir) {
+        this.data = data;
+        this.pagesDir = pagesDir;
+    }
+
+    /** Returns the default packed corpus, opening it on first use; null if {@link #PACK_FILE} does not exist. */
+    public static PackedCorpus get() {
+        PackedCorpus current = instance;
+        if (current != null) {
+            return current;
+        }
+        synchronized (PackedCorpus.class) {
+            if (instance == null) {
+                File packFile = AppConfig.dataFile(PACK_FILE);
+                if (packFile.isFile()) {
+                    try {
+                        instance = open(packFile);
+                    } catch (IOException e) {
+                        System.out.println("שגיאה בפתיחת הקובץ הארוז: " + e.getMessage());
+                    }
+                }
+            }
+            return instance;
+        }
+    }
+
+    /** Drops the currently opened default corpus so the next {@link #get()} re-opens it. */
+    public static synchronized void reset() {
+        instance = null;
+    }
+
+    /** Opens and maps a packed corpus file, with the {@code pages/} directory next to it. */
+    public static PackedCorpus open(File packFile) throws IOException {
+        return open(packFile, new File(packFile.getAbsoluteFile().getParentFile(), "pages"));
+    }
+
+    /**
+     * Opens and maps a packed corpus file packed from {@code pagesDir}; amudim changed, added or deleted there
+     * since it was packed are marked stale. Without {@code pagesDir} the pack is the only copy and is read as is.
+     */
+    public static PackedCorpus open(File packFile, File pagesDir) throws IOException {
+        try (FileChannel channel = FileChannel.open(packFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("הקובץ הארוז גדול מדי למיפוי: " + channel.size());
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            PackedCorpus corpus = new PackedCorpus(buffer, pagesDir);
+            corpus.packedAt = packFile.lastModified();
+            corpus.readTable();
+            corpus.markChangedSincePack();
+            return corpus;
+        }
+    }
+
+    /**
+     * Marks what changed in {@code pages/} while the pack was closed: every packed amud is stat-ed, and the daf
+     * directories of each packed tractate are listed for amudim added after packing. A tractate whose directory
+     * is gone is left to the pack.
+     */
+    private void markChangedSincePack() {
+        if (!pagesDir.isDirectory()) return;
+        for (Map.Entry<String, List<Entry>> masechet : byMasechet.entrySet()) {
+            File masechetDir = new File(pagesDir, masechet.getKey());
+            if (!masechetDir.isDirectory()) continue;
+            for (Entry entry : masechet.getValue()) {
+                markStale(pageKey(entry.masechet, entry.daf, entry.amudName));
+            }
+            for (int daf : sortedDafs(masechetDir)) {
+                for (String amudName : new String[] {"alef", "bet"}) {
+                    String key = pageKey(masechet.getKey(), daf, amudName);
+                    if (!entries.containsKey(key)) markStale(key); // עמוד שנוסף אחרי האריזה
+                }
+                if (staleMasechtot.contains(masechet.getKey())) break;
+            }
+        }
+        if (!stale.isEmpty() || !staleMasechtot.isEmpty()) {
+            System.out.println("עמודים שהשתנו מאז האריזה נקראים מהקבצים: " + stale.size() + " עמודים, "
+                               + staleMasechtot.size() + " מסכתות");
+        }
+    }
+
+    /** Reads the offset table; a header, table entry or page range outside the file means a bad pack. */
+    private void readTable() throws IOException {
+        int capacity = data.capacity();
+        if (capacity < 16 || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException("פורמט קובץ ארוז לא מוכר");
+        }
+        int count = data.getInt(8);
+        int dataStart = data.getInt(12);
+        if (count < 0 || dataStart < 16 || dataStart > capacity) {
+            throw new IOException("כותרת הקובץ הארוז פגומה");
+        }
+        int pos = 16;
+        for (int i = 0; i < count; i++) {
+            if (pos + 2 > dataStart) throw new IOException("טבלת הקובץ הארוז קטועה");
+            int nameLength = data.getShort(pos) & 0xFFFF;
+            if (pos + 2 + nameLength + 13 > dataStart) throw new IOException("טבלת הקובץ הארוז קטועה");
+            byte[] nameBytes = new byte[nameLength];
+            data.get(pos + 2, nameBytes);
+            pos += 2 + nameLength;
+            String masechet = new String(nameBytes, StandardCharsets.UTF_8);
+            int daf = data.getInt(pos);
+            String amudName = data.get(pos + 4) == 0 ? "alef" : "bet";
+            long offset = (long) dataStart + data.getInt(pos + 5);
+            int length = data.getInt(pos + 9);
+            pos += 13;
+            if (offset < dataStart || length < 0 || offset + length > capacity) { // עמוד שחורג מהקובץ
+                throw new IOException("עמוד מחוץ לגבולות הקובץ הארוז: " + pageKey(masechet, daf, amudName));
+            }
+
+            Entry entry = new Entry(masechet, daf, amudName, (int) offset, length);
+            entries.put(pageKey(masechet, daf, amudName), entry);
+            byMasechet.computeIfAbsent(masechet, k -> new ArrayList<>()).add(entry);
+        }
+    }
+
+    /** Cache/lookup key for a page, same format as {@link FileManager#loadPage}. */
+    static String pageKey(String masechet, int daf, String amudName) {
+        return masechet + "_" + daf + "_" + amudName;
+    }
+
+    /** @return page text for the key, or null if the page is not in the corpus or it or its tractate was marked stale */
+    public String read(String key) {
+        Entry entry = entries.get(key);
+        return entry == null || stale.contains(key) || staleMasechtot.contains(entry.masechet) ? null : read(entry);
+    }
+
+    /**
+     * @return page text stored at the given entry, or the current file's text if the amud was marked stale;
+     *         null if it was marked stale and its file has since been deleted, so callers skip the amud
+     */
+    public String read(Entry entry) {
+        if ((!stale.isEmpty() && stale.contains(pageKey(entry.masechet, entry.daf, entry.amudName)))
+            || staleMasechtot.contains(entry.masechet)) {
+            try {
+                return PageCodec.readAmud(new File(pagesDir, entry.masechet + "/" + entry.daf), entry.amudName);
+            } catch (IOException e) {
+                System.out.println("שגיאה בקריאת עמוד שהשתנה: " + e.getMessage());
+            }
+        }
+        byte[] bytes = new byte[entry.length];
+        data.get(entry.offset, bytes); // קריאה אבסולוטית - בטוחה לשימוש מכמה תהליכונים
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Marks an amud whose file in {@code pages/} is newer than the corpus (or was deleted) as stale, so reads of
+     * it go to the file until the next {@link #pack()}; amudim packed after their last write are left alone.
+     * An amud added to or deleted from a packed tractate marks the whole tractate stale: its entries no longer
+     * list its dafs, so {@link #getEntries} returns none and scans read the tractate's directory.
+     */
+    void markStale(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            int amudStart = key.lastIndexOf('_');
+            int dafStart = amudStart > 0 ? key.lastIndexOf('_', amudStart - 1) : -1;
+            if (dafStart <= 0) return;
+            String masechet = key.substring(0, dafStart);
+            if (byMasechet.containsKey(masechet) && PageCodec.amudExists(
+                    new File(pagesDir, masechet + "/" + key.substring(dafStart + 1, amudStart)), key.substring(amudStart + 1))) {
+                staleMasechtot.add(masechet); // עמוד חדש במסכת ארוזה
+            }
+            return;
+        }
+        File dafDir = new File(pagesDir, entry.masechet + "/" + entry.daf);
+        long modified = Math.max(new File(dafDir, entry.amudName + ".txt").lastModified(),
+                                 new File(dafDir, entry.amudName + ".txt.z").lastModified());
+        if (modified == 0) staleMasechtot.add(entry.masechet); // העמוד נמחק - רשימת הדפים השתנתה
+        if (modified == 0 || modified > packedAt) stale.add(key);
+    }
+
+    /** @return sorted list of tractate names in the corpus */
+    public List<String> getMasechtot() {
+        return new ArrayList<>(byMasechet.keySet());
+    }
+
+    /** @return entries of the tractate ordered by daf and amud (alef before bet); empty if absent or marked stale */
+    public List<Entry> getEntries(String masechet) {
+        if (!staleMasechtot.isEmpty() && staleMasechtot.contains(masechet)) return Collections.emptyList();
+        return byMasechet.getOrDefault(masechet, Collections.emptyList());
+    }
+
+    /** Number of amudim in the corpus. */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Packs the default {@code pages/} tree into {@link #PACK_FILE} and re-opens it. */
+    public static boolean pack() {
+        reset();
+        boolean packed = pack(AppConfig.dataFile("pages"), AppConfig.dataFile(PACK_FILE));
+        reset();
+        return packed;
+    }
+
+    /**
+     * Packs every {@code <masechet>/<daf>/alef.txt|bet.txt} (plain or compressed) under {@code pagesDir} into {@code packFile}.
+     * Page text is stored exactly as {@link FileManager#loadPage} returns it.
+     *
+     * @return whether the pack file was written
+     */
+    public static boolean pack(File pagesDir, File packFile) {
+        File[] masechetDirs = pagesDir.listFiles(File::isDirectory);
+        if (masechetDirs == null) {
+            System.out.println("תיקיית pages לא קיימת.");
+            return false;
+        }
+        Arrays.sort(masechetDirs, Comparator.comparing(File::getName));
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        DataOutputStream tableOut = new DataOutputStream(table);
+        File tempData = new File(packFile.getPath() + ".data.tmp");
+        int count = 0;
+        long offset = 0;
+
+        try (OutputStream dataOut = new BufferedOutputStream(new FileOutputStream(tempData))) {
+            for (File masechetDir : masechetDirs) {
+                byte[] nameBytes = masechetDir.getName().getBytes(StandardCharsets.UTF_8);
+                for (int daf : sortedDafs(masechetDir)) {
+                    for (int amud = 0; amud < 2; amud++) {
+                        String page = PageCodec.readAmud(new File(masechetDir, String.valueOf(daf)), amud == 0 ? "alef" : "bet");
+                        if (page == null) continue;
+
+                        byte[] text = page.getBytes(StandardCharsets.UTF_8);
+                        if (offset + text.length > Integer.MAX_VALUE) {
+                            throw new IOException("הקורפוס גדול מדי לקובץ ארוז יחיד");
+                        }
+                        dataOut.write(text);
+
+                        tableOut.writeShort(nameBytes.length);
+                        tableOut.write(nameBytes);
+                        tableOut.writeInt(daf);
+                        tableOut.writeByte(amud);
+                        tableOut.writeInt((int) offset);
+                        tableOut.writeInt(text.length);
+                        offset += text.length;
+                        count++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("שגיאה באריזת הדפים: " + e.getMessage());
+            tempData.delete();
+            return false;
+        }
+
+        File tempPack = new File(packFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempPack)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(16 + table.size()); // תחילת אזור הנתונים
+            table.writeTo(out);
+            Files.copy(tempData.toPath(), out);
+        } catch (IOException e) {
+            System.out.println("שגיאה בכתיבת הקובץ הארוז: " + e.getMessage());
+            tempPack.delete();
+            return false;
+        } finally {
+            tempData.delete();
+        }
+
+        try {
+            Files.move(tempPack.toPath(), packFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("שגיאה בהחלפת הקובץ הארוז: " + e.getMessage());
+            tempPack.delete();
+            return false;
+        }
+        System.out.println("נארזו " + count + " עמודים לקובץ " + packFile.getPath());
+        return true;
+    }
+
+    private static List<Integer> sortedDafs(File masechetDir) {
+        List<Integer> dafs = new ArrayList<>();
+        File[] dafDirs = masechetDir.listFiles(File::isDirectory);
+        if (dafDirs != null) {
+            for (File dafDir : dafDirs) {
+                try {
+                    dafs.add(Integer.parseInt(dafDir.getName()));
+                } catch (NumberFormatException e) {
+                    // דילוג על תיקיות שאינן מספרי דפים
+                }
+            }
+        }
+        Collections.sort(dafs);
+        return dafs;
+    }
+}
@@ -0,0 +1,295 @@
+package bavli;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent byte-bounded cache behind {@link CacheManager}. Reads are lock-free: a {@link ConcurrentHashMap}
+ * lookup plus a lossy append to a striped read buffer. The eviction lists are only touched under the eviction
+ * lock, which replays buffered reads in batches (on writes, or when a read buffer fills up), so recency is
+ * approximate under contention and exact for single-threaded use.
+ * <p>
+ * With {@link Policy#TINY_LFU} (W-TinyLFU) new pages enter a small LRU window (1% of the budget); a page leaving
+ * the window is admitted to the main LRU region only if a {@link FrequencySketch} says it was used more often
+ * than the main region's eviction victim, so one-off scans (exports, Mishna sweeps) do not flush studied pages.
+ * {@link Policy#LRU} is plain LRU over the whole budget.
+ */
+public class PageCache {
+
+    /** Eviction policy. */
+    public enum Policy { LRU, TINY_LFU }
+
+    /** Why an entry left the cache on its own. */
+    public enum EvictionCause {
+        /** Least recently used entry dropped to make room. */
+        SIZE,
+        /** New entry not admitted by TinyLFU because the would-be victim was used more often. */
+        REJECTED
+    }
+
+    /** Receives entries the cache drops to stay within its budget. */
+    public interface EvictionListener {
+        void onEviction(String key, String value, EvictionCause cause);
+    }
+
+    private static final int ENTRY_OVERHEAD = 96; // כותרות אובייקטים, רשומת המפה ומחרוזת המפתח
+    private static final int READ_BUFFER_SIZE = 32; // חזקה של 2
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final double WINDOW_FRACTION = 0.01;
+    private static final long SKETCH_ENTRY_BYTES = 8 * 1024; // משקל ממוצע משוער של עמוד, לגודל ה-sketch
+
+    private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ReadBuffer[] readBuffers;
+    private final Node window = new Node(null, null, 0); // רשימת החלון: הישן ביותר אחרי הראש
+    private final Node main = new Node(null, null, 0); // האזור הראשי: הישן ביותר אחרי הראש
+    private final Policy policy;
+    private final FrequencySketch sketch = new FrequencySketch(); // מוגן ע"י evictionLock
+    private volatile long maxBytes;
+    private volatile long totalBytes; // נכתב רק תחת evictionLock
+    private long windowBytes; // מוגן ע"י evictionLock
+    private volatile EvictionListener evictionListener; // נקרא תחת evictionLock
+
+    /** A cached page. Links and {@code list} are guarded by the eviction lock. */
+    static final class Node {
+        final String key;
+        final String value;
+        final long weight;
+        final LongAdder hits = new LongAdder();
+        final long creationTime = System.currentTimeMillis();
+        Node prev;
+        Node next;
+        Node list; // ראש הרשימה שבה נמצא הפריט, null אם אינו ברשימה
+
+        Node(String key, String value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            hits.increment(); // כמו קודם - פריט חדש מתחיל עם פגיעה אחת
+        }
+    }
+
+    /** Lossy single-slot-per-read ring buffer; reads that find it full are dropped. */
+    private static final class ReadBuffer {
+        final AtomicReferenceArray<Node> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        final AtomicLong writes = new AtomicLong();
+        long reads; // מוגן ע"י evictionLock
+    }
+
+    /** Creates a W-TinyLFU cache with the given byte budget. */
+    public PageCache(long maxBytes) {
+        this(maxBytes, Policy.TINY_LFU);
+    }
+
+    public PageCache(long maxBytes, Policy policy) {
+        this.policy = policy;
+        this.maxBytes = Math.max(0, maxBytes);
+        sketch.ensureCapacity(this.maxBytes / SKETCH_ENTRY_BYTES);
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        readBuffers = new ReadBuffer[stripes];
+        for (int i = 0; i < stripes; i++) readBuffers[i] = new ReadBuffer();
+        for (Node list : new Node[] {window, main}) {
+            list.prev = list;
+            list.next = list;
+        }
+    }
+
+    /** Approximate heap cost of an entry: UTF-16 chars of key and value plus fixed object overhead. */
+    static long weigh(String key, String value) {
+        return 2L * (key.length() + value.length()) + ENTRY_OVERHEAD;
+    }
+
+    /** @return cached value, or null if absent; records the access without taking a lock */
+    public String get(String key) {
+        Node node = data.get(key);
+        if (node == null) return null;
+        node.hits.increment();
+        recordRead(node);
+        return node.value;
+    }
+
+    public boolean contains(String key) {
+        return data.containsKey(key);
+    }
+
+    /** Puts a value, evicting (or, under TinyLFU, declining to admit) entries to stay within the budget. */
+    public void put(String key, String value) {
+        Node node = new Node(key, value, weigh(key, value));
+        if (node.weight > maxBytes) { // פריט גדול מכל התקציב לא נשמר כלל
+            remove(key);
+            return;
+        }
+        Node old = data.put(key, node);
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            if (old != null) unlink(old);
+            if (data.get(key) == node) { // ייתכן שהוחלף או נמחק בינתיים ע"י תהליכון אחר
+                sketch.increment(key);
+                linkLast(window, node);
+            }
+            evictToBudget();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void remove(String key) {
+        Node node = data.remove(key);
+        if (node == null) return;
+        evictionLock.lock();
+        try {
+            unlink(node);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void clear() {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            data.clear();
+            while (window.next != window) unlink(window.next);
+            while (main.next != main) unlink(main.next);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public long weightedSize() {
+        return totalBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Receives every entry dropped to stay within the budget, including TinyLFU rejections; not called for
+     * {@link #remove}, {@link #clear} or replaced values. Runs under the eviction lock, so it must not call back
+     * into this cache.
+     */
+    public void setEvictionListener(EvictionListener listener) {
+        evictionListener = listener;
+    }
+
+    /** Changes the budget, evicting immediately if the cache is over it. */
+    public void setMaxBytes(long bytes) {
+        evictionLock.lock();
+        try {
+            maxBytes = Math.max(0, bytes);
+            sketch.ensureCapacity(maxBytes / SKETCH_ENTRY_BYTES);
+            evictToBudget();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /** @return key to hit count for the current entries */
+    public Map<String, Integer> hitsSnapshot() {
+        Map<String, Integer> stats = new HashMap<>();
+        for (Node node : data.values()) {
+            stats.put(node.key, (int) Math.min(Integer.MAX_VALUE, node.hits.sum()));
+        }
+        return stats;
+    }
+
+    private void recordRead(Node node) {
+        ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (readBuffers.length - 1)];
+        long writes = buffer.writes.get();
+        long pending = writes - buffer.reads; // קריאה לא מסונכרנת של reads - מספיקה להערכה
+        if (pending < READ_BUFFER_SIZE && buffer.writes.compareAndSet(writes, writes + 1)) {
+            buffer.slots.lazySet((int) (writes & READ_BUFFER_MASK), node);
+            pending++;
+        }
+        if (pending >= READ_BUFFER_SIZE / 2 && evictionLock.tryLock()) { // ריקון בלי להמתין למנעול
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            long writes = buffer.writes.get();
+            for (long i = buffer.reads; i < writes; i++) {
+                Node node = buffer.slots.getAndSet((int) (i & READ_BUFFER_MASK), null);
+                if (node != null && node.list != null) {
+                    sketch.increment(node.key);
+                    Node list = node.list;
+                    unlink(node);
+                    linkLast(list, node); // העברה לסוף הרשימה שלו - הנגיש לאחרונה
+                }
+            }
+            buffer.reads = writes;
+        }
+    }
+
+    /**
+     * Moves pages that overflow the window into the main region and evicts until the total fits. Under
+     * TinyLFU a window candidate displaces main-region victims only while it is more frequent than each of them.
+     */
+    private void evictToBudget() {
+        long windowMax = policy == Policy.TINY_LFU ? (long) (maxBytes * WINDOW_FRACTION) : 0;
+        while (windowBytes > windowMax && window.next != window) {
+            Node candidate = window.next;
+            unlink(candidate);
+            linkLast(main, candidate);
+            while (totalBytes > maxBytes && main.next != candidate) {
+                Node victim = main.next;
+                if (policy == Policy.TINY_LFU && sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                    victim = candidate; // המועמד פחות שימושי - נדחה במקום הקורבן
+                }
+                evict(victim, victim == candidate ? EvictionCause.REJECTED : EvictionCause.SIZE);
+                if (victim == candidate) break;
+            }
+        }
+        while (totalBytes > maxBytes) { // הקטנת תקציב - פינוי מהאזור הראשי ואז מהחלון
+            evict(main.next != main ? main.next : window.next, EvictionCause.SIZE);
+        }
+    }
+
+    private void evict(Node node, EvictionCause cause) {
+        unlink(node);
+        if (data.remove(node.key, node)) {
+            EvictionListener listener = evictionListener;
+            if (listener != null) listener.onEviction(node.key, node.value, cause);
+        }
+    }
+
+    private void linkLast(Node list, Node node) {
+        node.prev = list.prev;
+        node.next = list;
+        list.prev.next = node;
+        list.prev = node;
+        node.list = list;
+        totalBytes += node.weight;
+        if (list == window) windowBytes += node.weight;
+    }
+
+    private void unlink(Node node) {
+        if (node.list == null) return;
+        if (node.list == window) windowBytes -= node.weight;
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        node.list = null;
+        totalBytes -= node.weight;
+    }
+}
@@ -0,0 +1,283 @@
+package bavli;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Optional compressed storage for amud files. When {@code bavli.compress=true}, pages are written as
+ * {@code alef.txt.z}/{@code bet.txt.z}: UTF-8 text deflated with a preset dictionary of common Talmudic
+ * Hebrew and Aramaic. The dictionary is either the built-in word list or one trained on the corpus
+ * ({@code pages.dict}); zlib records the dictionary checksum, so readers pick the right one.
+ * All page readers go through {@link #readAmud}, which handles both plain and compressed files.
+ */
+public class PageCodec {
+
+    /** Setting that turns on compressed page storage. */
+    public static final String COMPRESS_SETTING = "bavli.compress";
+
+    /** Suffix appended to {@code .txt} for compressed amud files. */
+    public static final String COMPRESSED_SUFFIX = ".z";
+
+    /** Trained dictionary location, next to the {@code pages/} directory. */
+    public static final String DICTIONARY_FILE = "pages.dict";
+
+    private static final int MAX_DICTIONARY = 32 * 1024; // חלון ה-deflate
+
+    // מילים וצירופים נפוצים בבבלי - הנפוצים ביותר בסוף (קרובים יותר לנתונים)
+    private static final String[] DEFAULT_WORDS = {
+        "תיקו", "תיובתא", "ורמינהו", "איבעיא להו", "מתקיף לה", "אי נמי", "אילימא", "אלא מעתה", "מנא הני מילי",
+        "מנלן", "דכתיב", "שנאמר", "אמר קרא", "גופא", "מיתיבי", "פשיטא", "לא צריכא", "כדי", "לפיכך", "הקדוש ברוך הוא",
+        "לעולם", "דתנן", "דתניא", "וכי", "בית שמאי", "בית הלל", "חכמים אומרים", "רבן גמליאל", "רבי עקיבא",
+        "רבי אליעזר", "רבי שמעון", "רבי מאיר", "רבי יהודה", "רבי זירא", "ריש לקיש", "רב הונא", "רב חסדא", "רב נחמן",
+        "רב אשי", "רב פפא", "אביי", "רבא", "חייב", "פטור", "מותר", "אסור", "טמא", "טהור", "כשר", "פסול", "קרבן",
+        "כהן", "ישראל", "שבת", "כגון", "היכי", "התם", "הכי", "נמי", "ביה", "בהו", "להו", "ליה", "דאמר", "אמרי",
+        "מאן", "אבל", "ואם", "שלא", "אינו", "אין", "היינו", "שמע מינה", "לא קשיא", "קשיא", "והא", "אלא",
+        "אמרו ליה", "אמר ליה", "תא שמע", "הכא במאי עסקינן", "מאי טעמא", "איתמר", "תניא", "תנו רבנן",
+        "אמר רב יהודה אמר שמואל", "אמר רבי יוחנן", "גמרא", "משנה", "מתני'", "גמ'", "פרק", "דף", "מסכת "
+    };
+
+    private static volatile byte[] trainedDictionary; // מילון מאומן שנטען מהדיסק (אם קיים)
+    private static volatile boolean trainedLoaded;
+    private static final byte[] DEFAULT_DICTIONARY = String.join(" ", DEFAULT_WORDS).getBytes(StandardCharsets.UTF_8);
+
+    /** @return whether new pages should be written compressed */
+    public static boolean isEnabled() {
+        return AppConfig.getBoolean(COMPRESS_SETTING, false);
+    }
+
+    /** Reads an amud, plain or compressed; returns null if neither file exists. */
+    public static String readAmud(File dafDir, String amudName) throws IOException {
+        File plain = new File(dafDir, amudName + ".txt");
+        if (plain.isFile()) {
+            return FileManager.readPageFile(plain);
+        }
+        File compressed = new File(dafDir, amudName + ".txt" + COMPRESSED_SUFFIX);
+        if (compressed.isFile()) {
+            return decompress(Files.readAllBytes(compressed.toPath()));
+        }
+        return null;
+    }
+
+    /** Opens an amud file found by a directory listing for line reading, decompressing {@code .txt.z} files. */
+    public static BufferedReader openAmud(File amudFile) throws IOException {
+        if (amudFile.getName().endsWith(COMPRESSED_SUFFIX)) {
+            return new BufferedReader(new StringReader(decompress(Files.readAllBytes(amudFile.toPath()))));
+        }
+        return new BufferedReader(new FileReader(amudFile));
+    }
+
+    /** @return "alef" or "bet" for an amud file in either form */
+    public static String amudNameOf(File amudFile) {
+        String name = amudFile.getName();
+        if (name.endsWith(COMPRESSED_SUFFIX)) name = name.substring(0, name.length() - COMPRESSED_SUFFIX.length());
+        return name.replace(".txt", "");
+    }
+
+    /** @return whether the amud exists in either form */
+    public static boolean amudExists(File dafDir, String amudName) {
+        return new File(dafDir, amudName + ".txt").isFile()
+            || new File(dafDir, amudName + ".txt" + COMPRESSED_SUFFIX).isFile();
+    }
+
+    /** Writes an amud in the configured form and removes a stale file of the other form. */
+    static File writeAmud(File dafDir, String amudName, String content) throws IOException {
+        File plain = new File(dafDir, amudName + ".txt");
+        File compressed = new File(dafDir, amudName + ".txt" + COMPRESSED_SUFFIX);
+        if (isEnabled()) {
+            Files.write(compressed.toPath(), compress(content));
+            plain.delete();
+            return compressed;
+        }
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(plain))) { // קריאה לכתיבה לקובץ
+            writer.write(content); // כתיבת התוכן לקובץ
+        }
+        compressed.delete();
+        return plain;
+    }
+
+    /** Deletes both forms of an amud file. */
+    static void deleteAmud(File dafDir, String amudName) {
+        new File(dafDir, amudName + ".txt").delete();
+        new File(dafDir, amudName + ".txt" + COMPRESSED_SUFFIX).delete();
+    }
+
+    /** Deflates UTF-8 page text with the current preset dictionary. */
+    public static byte[] compress(String text) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(currentDictionary());
+            deflater.setInput(text.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, text.length() / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Inflates bytes written by {@link #compress}, choosing the dictionary by its zlib checksum. */
+    public static String decompress(byte[] bytes) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(dictionaryFor(inflater.getAdler()));
+                    } else if (inflater.needsInput()) {
+                        throw new EOFException("קובץ דחוס קטוע");
+                    }
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IOException("קובץ דחוס פגום: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] dictionaryFor(int adler) throws IOException {
+        byte[] trained = trainedDictionary();
+        if (trained != null && adler32(trained) == adler) return trained;
+        if (adler32(DEFAULT_DICTIONARY) == adler) return DEFAULT_DICTIONARY;
+        throw new IOException("הקובץ נדחס עם מילון שאינו זמין");
+    }
+
+    private static byte[] currentDictionary() {
+        byte[] trained = trainedDictionary();
+        return trained != null ? trained : DEFAULT_DICTIONARY;
+    }
+
+    private static byte[] trainedDictionary() {
+        if (!trainedLoaded) {
+            synchronized (PageCodec.class) {
+                if (!trainedLoaded) {
+                    File file = AppConfig.dataFile(DICTIONARY_FILE);
+                    try {
+                        trainedDictionary = file.isFile() ? Files.readAllBytes(file.toPath()) : null;
+                    } catch (IOException e) {
+                        System.out.println("שגיאה בקריאת המילון: " + e.getMessage());
+                    }
+                    trainedLoaded = true;
+                }
+            }
+        }
+        return trainedDictionary;
+    }
+
+    private static int adler32(byte[] bytes) {
+        Adler32 adler = new Adler32();
+        adler.update(bytes);
+        return (int) adler.getValue();
+    }
+
+    /**
+     * Trains a preset dictionary on the corpus (most frequent words weighted by length, the most
+     * valuable placed last) and writes it to {@code dictionaryFile}.
+     */
+    public static byte[] trainDictionary(File pagesDir, File dictionaryFile, int samplePages) throws IOException {
+        Map<String, Integer> counts = new HashMap<>();
+        int sampled = 0;
+        outer:
+        for (File dafDir : listDafDirs(pagesDir)) {
+            for (String amudName : new String[] {"alef", "bet"}) {
+                String text = readAmud(dafDir, amudName);
+                if (text == null) continue;
+                for (String word : text.split("\\s+")) {
+                    if (word.length() > 1) counts.merge(word, 1, Integer::sum);
+                }
+                if (++sampled >= samplePages) break outer;
+            }
+        }
+
+        List<Map.Entry<String, Integer>> words = new ArrayList<>(counts.entrySet());
+        words.removeIf(e -> e.getValue() < 2);
+        words.sort((a, b) -> Long.compare((long) b.getValue() * b.getKey().length(),
+                                          (long) a.getValue() * a.getKey().length()));
+
+        // בחירת המילים החשובות ביותר עד גודל החלון, ואז היפוך הסדר כך שהחשובות יהיו בסוף
+        List<byte[]> chosen = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> entry : words) {
+            byte[] bytes = (entry.getKey() + " ").getBytes(StandardCharsets.UTF_8);
+            if (size + bytes.length > MAX_DICTIONARY) break;
+            chosen.add(bytes);
+            size += bytes.length;
+        }
+        Collections.reverse(chosen);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        for (byte[] bytes : chosen) out.write(bytes);
+        byte[] dictionary = out.toByteArray();
+
+        Files.write(dictionaryFile.toPath(), dictionary);
+        synchronized (PageCodec.class) {
+            trainedLoaded = false; // טעינה מחדש בשימוש הבא
+        }
+        return dictionary;
+    }
+
+    /**
+     * Trains {@link #DICTIONARY_FILE} on the default {@code pages/} tree and rewrites every amud compressed with it.
+     *
+     * @return number of amudim written compressed
+     */
+    public static int compressTree() throws IOException {
+        File pagesDir = AppConfig.dataFile("pages");
+        List<File> dafDirs = listDafDirs(pagesDir);
+
+        // עמודים שכבר דחוסים נפרסים קודם - אחרי האימון המילון הקודם כבר לא יהיה זמין
+        for (File dafDir : dafDirs) {
+            for (String amudName : new String[] {"alef", "bet"}) {
+                File compressed = new File(dafDir, amudName + ".txt" + COMPRESSED_SUFFIX);
+                if (!compressed.isFile()) continue;
+                String text = decompress(Files.readAllBytes(compressed.toPath()));
+                Files.write(new File(dafDir, amudName + ".txt").toPath(), text.getBytes(StandardCharsets.UTF_8));
+                compressed.delete();
+            }
+        }
+        trainDictionary(pagesDir, AppConfig.dataFile(DICTIONARY_FILE), 2000);
+
+        int converted = 0;
+        long before = 0;
+        long after = 0;
+        for (File dafDir : dafDirs) {
+            for (String amudName : new String[] {"alef", "bet"}) {
+                File plain = new File(dafDir, amudName + ".txt");
+                if (!plain.isFile()) continue;
+                before += plain.length();
+                byte[] bytes = compress(FileManager.readPageFile(plain));
+                Files.write(new File(dafDir, amudName + ".txt" + COMPRESSED_SUFFIX).toPath(), bytes);
+                plain.delete();
+                after += bytes.length;
+                converted++;
+            }
+        }
+        if (converted > 0) {
+            System.out.println("נדחסו " + converted + " עמודים: " + before / 1024 + "KB -> " + after / 1024 + "KB");
+        }
+        return converted;
+    }
+
+    private static List<File> listDafDirs(File pagesDir) {
+        List<File> result = new ArrayList<>();
+        File[] masechetDirs = pagesDir.listFiles(File::isDirectory);
+        if (masechetDirs == null) return result;
+        for (File masechetDir : masechetDirs) {
+            File[] dafDirs = masechetDir.listFiles(File::isDirectory);
+            if (dafDirs != null) result.addAll(Arrays.asList(dafDirs));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+package bavli;
+
+/**
+ * Packed {@code long} key of one amud: tractate ID ({@link TractateIds}, 16 bits), daf (31 bits) and amud
+ * (1 bit, 0 = alef). Replaces the {@code "masechet_daf_alef"} strings on the page lookup path; {@link #toString}
+ * gives that string form for the packed corpus, trace and hot-keys files.
+ */
+public final class PageKey {
+
+    /** Key returned for a tractate that is not in the corpus; names no amud. */
+    public static final long MISSING = -1L;
+
+    private PageKey() {
+    }
+
+    /** @param amud 0 for alef, 1 for bet */
+    public static long of(int tractateId, int daf, int amud) {
+        return ((long) tractateId << 32) | ((long) (daf & 0x7fffffff) << 1) | (amud & 1);
+    }
+
+    /**
+     * Key for an amud named by tractate, daf and amud letter ('א' or '1' for alef, anything else is bet).
+     * @return the key, or {@link #MISSING} if the tractate is not in the corpus
+     */
+    public static long of(String masechet, int daf, char amud) {
+        int id = TractateIds.lookup(masechet);
+        return id < 0 ? MISSING : of(id, daf, amud == 'א' || amud == '1' ? 0 : 1);
+    }
+
+    public static int tractateId(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int daf(long key) {
+        return (int) (key & 0xffffffffL) >>> 1;
+    }
+
+    /** @return 0 for alef, 1 for bet */
+    public static int amud(long key) {
+        return (int) (key & 1);
+    }
+
+    /** @return "alef" or "bet", as in the page file names */
+    public static String amudName(long key) {
+        return amud(key) == 0 ? "alef" : "bet";
+    }
+
+    /** @return the string form {@code masechet_daf_alef|bet}; empty for {@link #MISSING} */
+    public static String toString(long key) {
+        if (key == MISSING) return "";
+        return TractateIds.name(tractateId(key)) + "_" + daf(key) + "_" + amudName(key);
+    }
+}
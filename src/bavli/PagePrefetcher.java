@@ -0,0 +1,104 @@
+package bavli;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-ahead for sequential study. {@link FileManager#loadPage} reports every access; when a tractate is
+ * read in order (daf N alef, N bet, N+1 alef...) the next amudim are loaded into {@link CacheManager} on the
+ * background I/O pool. The window starts at 2 and doubles while the pattern holds, up to
+ * {@code bavli.prefetch.max} (default 8, 0 disables). Hits are prefetched pages that were then read;
+ * waste is prefetched pages dropped because the reader jumped elsewhere.
+ */
+public class PagePrefetcher {
+
+    private static final int INITIAL_WINDOW = 2;
+
+    private static final LongObjectMap<SequenceState> states = new LongObjectMap<>(); // מזהה מסכת -> מצב קריאה
+    private static final AtomicLong issued = new AtomicLong();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong wasted = new AtomicLong();
+    private static volatile int maxWindow = -1; // bavli.prefetch.max, נקרא פעם אחת ומחדש ב-reset
+
+    private static class SequenceState {
+        int lastPosition = -2; // מיקום העמוד האחרון שנקרא (דף*2 + עמוד)
+        int window; // מספר העמודים לטעינה מוקדמת, 0 כשאין רצף
+        int furthest = -1; // העמוד הרחוק ביותר שכבר נטען מראש
+        int firstOutstanding; // עמודים שנטענו מראש ועוד לא נקראו: firstOutstanding עד furthest
+    }
+
+    /**
+     * Records a page access and, if it continues a sequence, schedules read-ahead of the following amudim.
+     * Allocates nothing once the tractate has a state.
+     */
+    static void recordAccess(int tractateId, int daf, int amudIndex) {
+        int max = maxWindow;
+        if (max < 0) max = maxWindow = Math.max(0, AppConfig.getInt("bavli.prefetch.max", 8));
+        if (max == 0) return;
+
+        int position = daf * 2 + amudIndex;
+        int from;
+        int to;
+        SequenceState state = states.computeIfAbsent(tractateId, id -> new SequenceState());
+        synchronized (state) {
+            boolean outstanding = position >= state.firstOutstanding && position <= state.furthest;
+            if (outstanding) {
+                hits.incrementAndGet();
+            }
+            if (position == state.lastPosition) {
+                return; // טעינה חוזרת של אותו עמוד - לא משנה את הרצף
+            }
+            if (position == state.lastPosition + 1) {
+                state.window = state.window == 0 ? INITIAL_WINDOW : Math.min(state.window * 2, max);
+                state.firstOutstanding = Math.max(state.firstOutstanding, position + 1);
+            } else {
+                // הרצף נשבר - מה שנטען מראש ולא נקרא נחשב בזבוז
+                wasted.addAndGet(Math.max(0, state.furthest - state.firstOutstanding + 1) - (outstanding ? 1 : 0));
+                state.window = 0;
+                state.furthest = position;
+                state.firstOutstanding = position + 1;
+            }
+            state.lastPosition = position;
+
+            from = Math.max(state.furthest + 1, position + 1);
+            to = position + state.window;
+            if (to >= from) state.furthest = to;
+        }
+
+        for (int next = from; next <= to; next++) {
+            issued.incrementAndGet();
+            long pageKey = PageKey.of(tractateId, next / 2, next % 2);
+            FileManager.ioPool().execute(() -> FileManager.readPage(pageKey));
+        }
+    }
+
+    /** Number of amudim scheduled for read-ahead. */
+    public static long getIssued() {
+        return issued.get();
+    }
+
+    /** Number of prefetched amudim that were later read. */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /** Number of prefetched amudim dropped because the sequence broke. */
+    public static long getWasted() {
+        return wasted.get();
+    }
+
+    /** Clears counters and per-tractate sequence state, and re-reads {@code bavli.prefetch.max}. */
+    public static void reset() {
+        states.clear();
+        maxWindow = -1;
+        issued.set(0);
+        hits.set(0);
+        wasted.set(0);
+    }
+
+    /** @return one-line summary of the read-ahead counters */
+    public static String getSummary() {
+        long issuedCount = issued.get();
+        return "טעינה מוקדמת: " + issuedCount + " עמודים, פגיעות " + hits.get() + ", בזבוז " + wasted.get()
+                + (issuedCount > 0 ? " (" + (100 * hits.get() / issuedCount) + "% פגיעה)" : "");
+    }
+}
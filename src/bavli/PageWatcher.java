@@ -0,0 +1,283 @@
+package bavli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Background {@link WatchService} over {@code pages/} and {@code user_notes/}, so edits made while the
+ * application runs (a corrected amud file, a re-split from another process) are picked up without clearing the
+ * cache or reloading indexes by hand. Changed amudim are evicted from {@link CacheManager} and read from their
+ * files instead of the packed corpus, and only the affected tractates are re-indexed in {@link DataIndex}.
+ * Events are coalesced until {@code bavli.watch.quietMillis} (default 300) pass without new ones; note changes
+ * are passed to the {@link #addNotesListener listeners}. {@code bavli.watch=false} disables the watcher.
+ * <p>
+ * To stay far below the kernel's watch limit (one per daf would be ~2,700 for the whole Shas), only
+ * {@code pages/} itself, the tractate directories and directories created while watching are registered: added
+ * or deleted dafs and tractates, and amudim written into new dafs, are seen; an amud rewritten inside a daf
+ * directory that already existed is not, and is picked up by the incremental re-split or the next opening of the
+ * packed corpus. If {@code pages/} does not exist yet, its parent is watched until it appears.
+ */
+public class PageWatcher {
+
+    private static final List<Runnable> notesListeners = new CopyOnWriteArrayList<>();
+    private static PageWatcher running; // מוגן ע"י PageWatcher.class
+
+    private final Path pagesRoot;
+    private final Path notesRoot;
+    private final WatchService service;
+    private final Map<WatchKey, Path> dirs = new HashMap<>(); // נגיש רק מתהליכון הצפייה ומהבנאי
+    private WatchKey rootParent; // התיקייה שבה תיווצר pages, כל עוד היא לא קיימת
+    private final long quietMillis;
+    private volatile long batches; // מספר קבוצות שינויים שטופלו
+
+    /** Changes collected from one burst of events. */
+    private static final class Batch {
+        final Set<String> keys = new LinkedHashSet<>(); // מפתחות עמודים שהשתנו
+        final Set<String> masechtot = new TreeSet<>(); // מסכתות לאינדוקס מחדש
+        final Set<String> wholeMasechtot = new TreeSet<>(); // מסכתות שתיקייתן נוצרה או נמחקה
+        boolean notes;
+        boolean overflow;
+    }
+
+    private PageWatcher(File pagesDir, File notesDir, long quietMillis) throws IOException {
+        this.pagesRoot = pagesDir.toPath().toAbsolutePath().normalize();
+        this.notesRoot = notesDir.toPath().toAbsolutePath().normalize();
+        this.quietMillis = quietMillis;
+        this.service = FileSystems.getDefault().newWatchService();
+        if (Files.isDirectory(pagesRoot)) registerTree(pagesRoot, null); else watchForRoot();
+        if (Files.isDirectory(notesRoot)) register(notesRoot);
+    }
+
+    /** Starts watching {@code pages/} and {@code user_notes/} on a daemon thread; does nothing if already running. */
+    public static synchronized void start() {
+        if (running != null || !AppConfig.getBoolean("bavli.watch", true)) return;
+        try {
+            running = watch(AppConfig.dataFile("pages"), new File("user_notes"), AppConfig.getInt("bavli.watch.quietMillis", 300));
+        } catch (IOException e) {
+            System.out.println("לא ניתן להפעיל מעקב אחר שינויים בקבצים: " + e.getMessage());
+        }
+    }
+
+    /** Watches the given directories on a daemon thread until {@link #close}; the tests watch a temporary tree. */
+    static PageWatcher watch(File pagesDir, File notesDir, long quietMillis) throws IOException {
+        PageWatcher watcher = new PageWatcher(pagesDir, notesDir, quietMillis);
+        Thread thread = new Thread(watcher::run, "bavli-watcher");
+        thread.setDaemon(true); // לא מונע את סגירת התוכנית
+        thread.start();
+        return watcher;
+    }
+
+    /** Stops the watcher thread. */
+    void close() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            System.out.println("שגיאה בסגירת המעקב אחר הקבצים: " + e.getMessage());
+        }
+    }
+
+    /** Number of directories registered with the watch service (the kernel's watches). */
+    int watchedDirectories() {
+        return dirs.size();
+    }
+
+    /** Number of coalesced change batches this watcher applied. */
+    long batches() {
+        return batches;
+    }
+
+    /** Registers a callback run (on the watcher thread) after files in {@code user_notes/} change. */
+    public static void addNotesListener(Runnable listener) {
+        notesListeners.add(listener);
+    }
+
+    public static void removeNotesListener(Runnable listener) {
+        notesListeners.remove(listener);
+    }
+
+    /** Number of coalesced change batches applied since start, 0 when not running. */
+    static synchronized long getBatches() {
+        return running == null ? 0 : running.batches;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Batch batch = new Batch();
+                collect(service.take(), batch);
+                WatchKey next;
+                while ((next = service.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) { // איחוד רצף אירועים
+                    collect(next, batch);
+                }
+                apply(batch);
+                batches++;
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // סגירת התוכנית
+        }
+    }
+
+    private void collect(WatchKey key, Batch batch) {
+        if (key == rootParent) {
+            rootAppeared(key, batch);
+            return;
+        }
+        Path dir = dirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || dir == null) {
+                batch.overflow = true; // אירועים אבדו - אין ברירה אלא לרענן הכול
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (path.startsWith(notesRoot)) {
+                batch.notes = true;
+                continue;
+            }
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerTree(path, batch); // תיקיית מסכת או דף חדשה - גם הקבצים שכבר נכתבו בה
+                } catch (IOException e) {
+                    batch.overflow = true;
+                }
+            }
+            pageChanged(path, batch);
+        }
+        if (!key.reset()) {
+            dirs.remove(key); // התיקייה נמחקה
+            if (dir != null && dir.equals(pagesRoot)) watchForRoot();
+        }
+    }
+
+    /** Waits for {@code pages/} to be created in its parent directory; does nothing if the parent is missing too. */
+    private void watchForRoot() {
+        Path parent = pagesRoot.getParent();
+        if (parent == null || !Files.isDirectory(parent)) return;
+        try {
+            rootParent = parent.register(service, ENTRY_CREATE);
+            if (Files.isDirectory(pagesRoot)) rootAppeared(rootParent, null); // נוצרה לפני הרישום
+        } catch (IOException e) {
+            System.out.println("לא ניתן לעקוב אחר יצירת תיקיית הדפים: " + e.getMessage());
+        }
+    }
+
+    /** Handles events in the parent of {@code pages/}: once it exists, watches it instead of the parent. */
+    private void rootAppeared(WatchKey key, Batch batch) {
+        key.pollEvents(); // שאר הקבצים בתיקייה לא מעניינים
+        if (!Files.isDirectory(pagesRoot)) {
+            key.reset();
+            return;
+        }
+        key.cancel();
+        rootParent = null;
+        try {
+            registerTree(pagesRoot, batch); // בלי קבוצה - בבנאי, לפני שנקרא דבר מהתיקייה
+        } catch (IOException e) {
+            if (batch != null) batch.overflow = true;
+        }
+    }
+
+    /** Maps a path under {@code pages/} to the cache keys and tractate it affects. */
+    private void pageChanged(Path path, Batch batch) {
+        if (!path.startsWith(pagesRoot)) return;
+        Path relative = pagesRoot.relativize(path);
+        if (relative.getNameCount() == 0 || relative.getNameCount() > 3) return;
+        String masechet = relative.getName(0).toString();
+        batch.masechtot.add(masechet);
+        if (relative.getNameCount() == 1) {
+            batch.wholeMasechtot.add(masechet);
+            return;
+        }
+        int daf;
+        try {
+            daf = Integer.parseInt(relative.getName(1).toString());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (relative.getNameCount() == 2) { // תיקיית דף שלמה
+            batch.keys.add(PackedCorpus.pageKey(masechet, daf, "alef"));
+            batch.keys.add(PackedCorpus.pageKey(masechet, daf, "bet"));
+            return;
+        }
+        String amudName = PageCodec.amudNameOf(path.toFile());
+        if (amudName.equals("alef") || amudName.equals("bet")) { // מתעלמים מקבצים זמניים של עורכים
+            batch.keys.add(PackedCorpus.pageKey(masechet, daf, amudName));
+        }
+    }
+
+    private void apply(Batch batch) {
+        if (batch.overflow) {
+            CacheManager.clear();
+            DerivedCache.clear();
+            Set<String> all = new TreeSet<>(DataIndex.getAllMasechtot());
+            File[] masechetDirs = pagesRoot.toFile().listFiles(File::isDirectory);
+            if (masechetDirs != null) for (File dir : masechetDirs) all.add(dir.getName());
+            DataIndex.reindexMasechtot(all);
+            System.out.println("שינויים רבים בקבצים - המטמון נוקה והאינדקס רוענן");
+            notifyNotes();
+            return;
+        }
+
+        for (String masechet : batch.wholeMasechtot) {
+            for (int daf : DataIndex.getDafsForMasechet(masechet)) {
+                batch.keys.add(PackedCorpus.pageKey(masechet, daf, "alef"));
+                batch.keys.add(PackedCorpus.pageKey(masechet, daf, "bet"));
+            }
+        }
+        PackedCorpus pack = PackedCorpus.get();
+        for (String key : batch.keys) {
+            if (pack != null) pack.markStale(key); // הקובץ הארוז כבר לא מעודכן לגבי העמוד הזה
+            CacheManager.remove(key);
+        }
+        if (!batch.masechtot.isEmpty()) {
+            DataIndex.reindexMasechtot(batch.masechtot);
+            System.out.println("עודכנו " + batch.keys.size() + " עמודים במטמון ובאינדקס עבור: " + batch.masechtot);
+        }
+        if (batch.notes) {
+            notifyNotes();
+        }
+    }
+
+    private static void notifyNotes() {
+        for (Runnable listener : notesListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                System.out.println("שגיאה בעדכון תצוגת ההערות: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Registers a directory under {@code pages/} and the tractate directories in it; existing daf directories are
+     * not registered, only the one passed in. With a batch, the amud files already present count as changed.
+     */
+    private void registerTree(Path root, Batch batch) throws IOException {
+        int level = level(root);
+        int depth = Math.max(0, (batch != null ? 3 : 1) - level); // מסכת/דף/עמוד
+        try (Stream<Path> paths = Files.walk(root, depth)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(path)) {
+                    if (path.equals(root) || level(path) <= 1) register(path);
+                } else if (batch != null) {
+                    pageChanged(path, batch);
+                }
+            }
+        }
+    }
+
+    /** @return 0 for {@code pages/}, 1 for a tractate directory, 2 for a daf directory */
+    private int level(Path path) {
+        return path.equals(pagesRoot) ? 0 : pagesRoot.relativize(path).getNameCount();
+    }
+
+    private void register(Path dir) throws IOException {
+        dirs.put(dir.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+    }
+}
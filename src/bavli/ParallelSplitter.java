@@ -0,0 +1,179 @@
+package bavli;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Parallel split of the main Talmud file. A first pass scans raw bytes for "מסכת ... פרק" lines that
+ * start a new tractate, carrying the daf/amud state across each boundary; every tractate's byte ranges
+ * are then parsed by {@link FileManager#splitLines} and written on a worker pool.
+ * Tractates that appear more than once are handled by one worker in file order, so the result is
+ * byte-identical to the sequential split.
+ */
+public class ParallelSplitter {
+
+    /** A byte range of the main file starting at a tractate boundary, with the parser state at that point. */
+    static class Chunk {
+        final long start;
+        long end;
+        String masechet;
+        final int daf;
+        final char amud;
+
+        Chunk(long start, String masechet, int daf, char amud) {
+            this.start = start;
+            this.masechet = masechet;
+            this.daf = daf;
+            this.amud = amud;
+        }
+    }
+
+    /** Splits {@code source} into {@code pagesDir} using {@code threads} workers. */
+    public static void split(File source, File pagesDir, int threads) throws IOException {
+        split(source, threads, (masechet, daf, amud, content) ->
+                FileManager.savePageToFile(pagesDir, masechet, daf, amud, content));
+    }
+
+    /** Splits {@code source} in parallel, handing every amud to {@code sink} (which must be thread-safe). */
+    static void split(File source, int threads, FileManager.PageSink sink) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Charset charset = Charset.defaultCharset(); // אותו קידוד כמו FileReader בפיצול הרגיל
+        List<Chunk> chunks = findChunks(source, charset);
+
+        // קיבוץ קטעים לפי מסכת - כל מסכת נכתבת ע"י תהליכון אחד לפי סדר הקובץ
+        Map<String, List<Chunk>> byMasechet = new LinkedHashMap<>();
+        for (Chunk chunk : chunks) {
+            byMasechet.computeIfAbsent(String.valueOf(chunk.masechet), k -> new ArrayList<>()).add(chunk);
+        }
+        System.out.println("נמצאו " + byMasechet.size() + " מסכתות בקובץ, מפצל במקביל על " + threads + " תהליכונים");
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (List<Chunk> group : byMasechet.values()) {
+                futures.add(pool.submit(() -> splitGroup(channel, charset, group, sink)));
+            }
+
+            int pages = 0;
+            for (Future<Integer> future : futures) {
+                pages += future.get();
+            }
+            System.out.println("פיצול הסתיים: " + pages + " עמודים ב-" + (System.currentTimeMillis() - startTime) + " מ\"ש");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("הפיצול הופרע", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static int splitGroup(FileChannel channel, Charset charset, List<Chunk> group,
+                                  FileManager.PageSink sink) throws IOException {
+        int[] saved = {0};
+        for (Chunk chunk : group) {
+            ByteBuffer bytes = ByteBuffer.allocate(Math.toIntExact(chunk.end - chunk.start));
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, chunk.start + bytes.position()) < 0) break;
+            }
+            bytes.flip();
+
+            FileManager.SplitState state = new FileManager.SplitState();
+            state.daf = chunk.daf;
+            state.amud = chunk.amud;
+            try (BufferedReader reader = new BufferedReader(new StringReader(charset.decode(bytes).toString()))) {
+                FileManager.splitLines(reader, state, (masechet, daf, amud, content) -> {
+                    sink.save(masechet, daf, amud, content);
+                    saved[0]++;
+                }, false);
+            }
+        }
+        return saved[0];
+    }
+
+    /**
+     * First pass: finds the line offsets where the tractate name changes. Only lines starting with
+     * "מסכת " or "דף" are decoded; everything else is skipped at byte level.
+     */
+    static List<Chunk> findChunks(File source, Charset charset) throws IOException {
+        byte[] masechetPrefix = "מסכת ".getBytes(charset);
+        byte[] dafPrefix = "דף".getBytes(charset);
+
+        List<Chunk> chunks = new ArrayList<>();
+        Chunk current = new Chunk(0, null, -1, ' ');
+        chunks.add(current);
+        FileManager.SplitState state = new FileManager.SplitState();
+
+        try (InputStream in = new FileInputStream(source)) {
+            byte[] buffer = new byte[1 << 16];
+            byte[] line = new byte[256]; // השורה הנוכחית
+            int lineLength = 0;
+            long lineStart = 0;
+            long position = 0;
+            boolean pendingCr = false;
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++, position++) {
+                    byte b = buffer[i];
+                    if (pendingCr) {
+                        pendingCr = false;
+                        if (b == '\n') { // \r\n נחשב כסוף שורה אחד
+                            lineStart = position + 1;
+                            continue;
+                        }
+                    }
+                    if (b == '\n' || b == '\r') {
+                        current = scanLine(line, lineLength, lineStart, masechetPrefix, dafPrefix, charset,
+                                           state, current, chunks);
+                        lineLength = 0;
+                        lineStart = position + 1;
+                        pendingCr = b == '\r';
+                    } else {
+                        if (lineLength == line.length) line = Arrays.copyOf(line, lineLength * 2);
+                        line[lineLength++] = b;
+                    }
+                }
+            }
+            current = scanLine(line, lineLength, lineStart, masechetPrefix, dafPrefix, charset, state, current, chunks);
+            current.end = position;
+        }
+        return chunks;
+    }
+
+    private static Chunk scanLine(byte[] bytes, int length, long lineStart, byte[] masechetPrefix, byte[] dafPrefix, Charset charset,
+                                  FileManager.SplitState state, Chunk current, List<Chunk> chunks) {
+        if (startsWith(bytes, length, masechetPrefix)) {
+            String name = FileManager.masechetNameOf(new String(bytes, 0, length, charset));
+            if (name == null) {
+                return current;
+            }
+            if (state.masechet == null) {
+                current.masechet = name; // המסכת הראשונה - ללא גבול קטע
+            } else if (!name.equals(state.masechet)) {
+                current.end = lineStart;
+                current = new Chunk(lineStart, name, state.daf, state.amud);
+                chunks.add(current);
+            }
+            state.masechet = name;
+        } else if (startsWith(bytes, length, dafPrefix)) {
+            state.parseDafHeader(new String(bytes, 0, length, charset));
+            state.enterHeaderPage();
+        }
+        return current;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,142 @@
+package bavli;
+
+import java.util.*;
+
+/**
+ * Chapter boundaries of one tractate: the position (daf, amud, line) of every perek header found by the Mishna
+ * scan, sorted by position, with the same starts also ordered by perek number. A perek runs from its header to
+ * the next header, or to the end of the tractate; "which perek is this amud in" and "which amudim belong to
+ * perek N" are each a binary search. Built with the Mishna index; immutable.
+ */
+final class PerekIndex {
+
+    static final int END_OF_AMUD = Integer.MAX_VALUE;
+
+    /** Part of an amud that belongs to a perek: lines {@code fromLine} (inclusive) to {@code toLine} (exclusive). */
+    static final class Span {
+        final int daf;
+        final int amud; // 0 = alef, 1 = bet
+        final int fromLine;
+        final int toLine; // END_OF_AMUD - עד סוף העמוד
+
+        Span(int daf, int amud, int fromLine, int toLine) {
+            this.daf = daf;
+            this.amud = amud;
+            this.fromLine = fromLine;
+            this.toLine = toLine;
+        }
+
+        @Override
+        public String toString() {
+            return daf + (amud == 0 ? "a" : "b") + "[" + fromLine + "," + (toLine == END_OF_AMUD ? "" : toLine) + ")";
+        }
+    }
+
+    private final long[] positions; // תחילת כל פרק, ממוין לפי מיקום
+    private final int[] pereks;
+    private final int[] byPerek; // אינדקסים ל-positions ממוינים לפי מספר פרק ואז מיקום
+    private final long end;
+
+    private PerekIndex(long[] positions, int[] pereks, long end) {
+        this.positions = positions;
+        this.pereks = pereks;
+        this.end = end;
+        Integer[] order = new Integer[positions.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(i -> pereks[i])); // מיון יציב - באותו פרק לפי מיקום
+        this.byPerek = new int[order.length];
+        for (int i = 0; i < order.length; i++) byPerek[i] = order[i];
+    }
+
+    /**
+     * @param positions header positions from {@link #position}, in any order
+     * @param pereks perek number of each header
+     * @param lastDaf last daf of the tractate; the last perek runs to the end of its amud bet
+     */
+    static PerekIndex of(long[] positions, int[] pereks, int lastDaf) {
+        Integer[] order = new Integer[positions.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong(i -> positions[i]));
+        long[] sortedPositions = new long[positions.length];
+        int[] sortedPereks = new int[positions.length];
+        int count = 0;
+        for (int i : order) {
+            if (count > 0 && sortedPereks[count - 1] == pereks[i]) continue; // כותרת חוזרת של אותו פרק
+            sortedPositions[count] = positions[i];
+            sortedPereks[count++] = pereks[i];
+        }
+        return new PerekIndex(Arrays.copyOf(sortedPositions, count), Arrays.copyOf(sortedPereks, count),
+                              position(lastDaf, 1, END_OF_AMUD));
+    }
+
+    /** Packs an amud line position so that positions sort in reading order. */
+    static long position(int daf, int amud, int line) {
+        return ((long) daf << 32) | ((long) amud << 31) | line;
+    }
+
+    private static int daf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int amud(long position) {
+        return (int) (position >>> 31) & 1;
+    }
+
+    private static int line(long position) {
+        return (int) (position & Integer.MAX_VALUE);
+    }
+
+    /** @return the perek at the given line, or -1 if it comes before the first header */
+    int perekAt(int daf, int amud, int line) {
+        int index = Arrays.binarySearch(positions, position(daf, amud, line));
+        if (index < 0) index = -index - 2; // הכותרת האחרונה שלפני המיקום
+        return index < 0 ? -1 : pereks[index];
+    }
+
+    /** @return the amudim of perek {@code perek} in reading order, trimmed to its lines; empty if it has no header */
+    List<Span> spans(int perek) {
+        List<Span> spans = new ArrayList<>();
+        int low = 0;
+        int high = byPerek.length;
+        while (low < high) { // ההופעה הראשונה של הפרק
+            int middle = (low + high) >>> 1;
+            if (pereks[byPerek[middle]] < perek) low = middle + 1; else high = middle;
+        }
+        for (int i = low; i < byPerek.length && pereks[byPerek[i]] == perek; i++) {
+            int start = byPerek[i];
+            addSpans(spans, positions[start], start + 1 < positions.length ? positions[start + 1] : end);
+        }
+        return spans;
+    }
+
+    private static void addSpans(List<Span> spans, long from, long to) {
+        int lastDaf = daf(to);
+        int lastAmud = amud(to);
+        for (int daf = daf(from), amud = amud(from); daf < lastDaf || (daf == lastDaf && amud <= lastAmud); ) {
+            int fromLine = daf == daf(from) && amud == amud(from) ? line(from) : 0;
+            int toLine = daf == lastDaf && amud == lastAmud ? line(to) : END_OF_AMUD;
+            if (toLine > fromLine) spans.add(new Span(daf, amud, fromLine, toLine));
+            if (amud == 1) daf++;
+            amud ^= 1;
+        }
+    }
+
+    /** @return number of chapter starts */
+    int size() {
+        return positions.length;
+    }
+
+    /** @return position of the {@code index}-th chapter start, in reading order */
+    long startPosition(int index) {
+        return positions[index];
+    }
+
+    int startPerek(int index) {
+        return pereks[index];
+    }
+
+    /** @return the last daf of the tractate, where the last perek ends */
+    int lastDaf() {
+        return daf(end);
+    }
+}
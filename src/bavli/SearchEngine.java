@@ -26,8 +26,9 @@ public class SearchEngine {
         List<String> results = new ArrayList<>();
         Map<String, List<String>> foundLocations = new HashMap<>(); // לאחסון מיקומים מדויקים של תוצאות
         
-        File baseDir = new File("pages/");
-        if (!baseDir.exists()) {
+        // רשימת המסכתות - מהקובץ הארוז אם קיים, ובנוסף תיקיות pages שאינן בו
+        List<String> masechtot = CorpusScanner.masechtot();
+        if (masechtot == null) {
             results.add("לא נמצאה תיקיית הדפים.");
             return results;
         }
@@ -36,11 +37,8 @@ public class SearchEngine {
         List<Thread> searchThreads = new ArrayList<>();
         final Object lock = new Object();
 
-        for (File masechetDir : baseDir.listFiles()) {
-            if (!masechetDir.isDirectory()) continue;
-            
+        for (String masechet : masechtot) {
             Thread thread = new Thread(() -> {
-                String masechet = masechetDir.getName();
                 List<String> masechetResults = searchInMasechet(masechet, quote, fuzzySearch, maxDistance);
                 
                 synchronized (lock) {
@@ -84,7 +82,24 @@ public class SearchEngine {
     
     private static List<String> searchInMasechet(String masechet, String quote, boolean fuzzySearch, int maxDistance) {
         List<String> results = new ArrayList<>();
-        File masechetDir = new File("pages/" + masechet);
+
+        PackedCorpus pack = PackedCorpus.get();
+        if (pack != null && !pack.getEntries(masechet).isEmpty()) { // סריקה מהקובץ הארוז - ללא פתיחת קובץ לכל עמוד
+            for (PackedCorpus.Entry entry : pack.getEntries(masechet)) {
+                String text = pack.read(entry);
+                if (text == null) continue; // העמוד נמחק אחרי האריזה
+                try (BufferedReader reader = new BufferedReader(new StringReader(text))) {
+                    String found = findFirstMatch(reader, masechet, String.valueOf(entry.getDaf()),
+                                                  entry.getAmudName(), quote, fuzzySearch, maxDistance);
+                    if (found != null) results.add(found);
+                } catch (IOException e) {
+                    System.out.println("שגיאה בקריאת עמוד: " + masechet + " " + entry.getDaf() + " - " + e.getMessage());
+                }
+            }
+            return results;
+        }
+
+        File masechetDir = new File(AppConfig.dataFile("pages"), masechet);
         
         for (File dafDir : masechetDir.listFiles()) {
             if (!dafDir.isDirectory()) continue;
@@ -94,34 +109,11 @@ public class SearchEngine {
             for (File amudFile : dafDir.listFiles()) {
                 if (!amudFile.isFile()) continue;
                 
-                String amud = amudFile.getName().replace(".txt", "");
+                String amud = PageCodec.amudNameOf(amudFile);
                 
-                try (BufferedReader reader = new BufferedReader(new FileReader(amudFile))) {
-                    String line;
-                    int lineNumber = 0;
-                    
-                    while ((line = reader.readLine()) != null) {
-                        lineNumber++;
-                        
-                        boolean found = false;
-                        
-                        if (fuzzySearch) {
-                            // חיפוש מטושטש עם סבילות לשגיאות
-                            found = fuzzyContains(line, quote, maxDistance);
-                        } else {
-                            // חיפוש רגיל
-                            found = line.contains(quote);
-                        }
-                        
-                        if (found) {
-                            String hebrewAmud = amud.equals("alef") ? "א" : "ב"; 
-                            String resultLine = "נמצא במסכת " + masechet + " דף " + daf + 
-                                        " עמוד " + hebrewAmud + " (שורה " + lineNumber + "): " + 
-                                        highlightMatch(line, quote, fuzzySearch);
-                            results.add(resultLine);
-                            break; // לא צריך לקרוא את כל הקובץ אם כבר נמצא
-                        }
-                    }
+                try (BufferedReader reader = PageCodec.openAmud(amudFile)) { // קובץ רגיל או דחוס
+                    String found = findFirstMatch(reader, masechet, daf, amud, quote, fuzzySearch, maxDistance);
+                    if (found != null) results.add(found);
                 } catch (IOException e) {
                     System.out.println("שגיאה בקריאת קובץ: " + amudFile.getPath() + " - " + e.getMessage());
                 }
@@ -130,6 +122,35 @@ public class SearchEngine {
         
         return results;
     }
+
+    /** Returns the result line for the first matching line of one amud, or null if it does not match. */
+    private static String findFirstMatch(BufferedReader reader, String masechet, String daf, String amud,
+                                         String quote, boolean fuzzySearch, int maxDistance) throws IOException {
+        String line;
+        int lineNumber = 0;
+        
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            
+            boolean found = false;
+            
+            if (fuzzySearch) {
+                // חיפוש מטושטש עם סבילות לשגיאות
+                found = fuzzyContains(line, quote, maxDistance);
+            } else {
+                // חיפוש רגיל
+                found = line.contains(quote);
+            }
+            
+            if (found) {
+                String hebrewAmud = amud.equals("alef") ? "א" : "ב"; 
+                return "נמצא במסכת " + masechet + " דף " + daf + 
+                       " עמוד " + hebrewAmud + " (שורה " + lineNumber + "): " + 
+                       highlightMatch(line, quote, fuzzySearch); // לא צריך לקרוא את כל הקובץ אם כבר נמצא
+            }
+        }
+        return null;
+    }
     
     /**
      * בודק האם מחרוזת כוללת תת-מחרוזת אחרת עם סבילות לשגיאות
@@ -221,44 +242,47 @@ public class SearchEngine {
      */
     public static List<String> searchInSpecificMasechet(String masechet, int startDaf, int endDaf, String quote) {
         List<String> results = new ArrayList<>();
-        File masechetDir = new File("pages/" + masechet);
-        
-        if (!masechetDir.exists() || !masechetDir.isDirectory()) {
-            results.add("מסכת " + masechet + " לא נמצאה.");
-            return results;
-        }
-        
-        for (File dafDir : masechetDir.listFiles()) {
-            if (!dafDir.isDirectory()) continue;
+
+        PackedCorpus pack = PackedCorpus.get();
+        if (pack != null && !pack.getEntries(masechet).isEmpty()) { // סריקה מהקובץ הארוז
+            for (PackedCorpus.Entry entry : pack.getEntries(masechet)) {
+                if (entry.getDaf() < startDaf || entry.getDaf() > endDaf) continue;
+                String text = pack.read(entry);
+                if (text == null) continue; // העמוד נמחק אחרי האריזה
+                try (BufferedReader reader = new BufferedReader(new StringReader(text))) {
+                    collectMatches(reader, masechet, entry.getDaf(), entry.getAmudName(), quote, results);
+                } catch (IOException e) {
+                    results.add("שגיאה בקריאת עמוד: " + masechet + " " + entry.getDaf());
+                }
+            }
+        } else {
+            File masechetDir = new File(AppConfig.dataFile("pages"), masechet);
             
-            try {
-                int dafNum = Integer.parseInt(dafDir.getName());
-                if (dafNum < startDaf || dafNum > endDaf) continue;
+            if (!masechetDir.exists() || !masechetDir.isDirectory()) {
+                results.add("מסכת " + masechet + " לא נמצאה.");
+                return results;
+            }
+            
+            for (File dafDir : masechetDir.listFiles()) {
+                if (!dafDir.isDirectory()) continue;
                 
-                for (File amudFile : dafDir.listFiles()) {
-                    if (!amudFile.isFile()) continue;
-                    String amud = amudFile.getName().replace(".txt", "");
+                try {
+                    int dafNum = Integer.parseInt(dafDir.getName());
+                    if (dafNum < startDaf || dafNum > endDaf) continue;
                     
-                    try (BufferedReader reader = new BufferedReader(new FileReader(amudFile))) {
-                        String line;
-                        int lineNumber = 0;
+                    for (File amudFile : dafDir.listFiles()) {
+                        if (!amudFile.isFile()) continue;
+                        String amud = PageCodec.amudNameOf(amudFile);
                         
-                        while ((line = reader.readLine()) != null) {
-                            lineNumber++;
-                            
-                            if (line.contains(quote)) {
-                                String hebrewAmud = amud.equals("alef") ? "א" : "ב"; 
-                                results.add("נמצא במסכת " + masechet + " דף " + dafNum + 
-                                           " עמוד " + hebrewAmud + " (שורה " + lineNumber + "): " + 
-                                           highlightMatch(line, quote, false));
-                            }
+                        try (BufferedReader reader = PageCodec.openAmud(amudFile)) { // קובץ רגיל או דחוס
+                            collectMatches(reader, masechet, dafNum, amud, quote, results);
+                        } catch (IOException e) {
+                            results.add("שגיאה בקריאת קובץ: " + amudFile.getPath());
                         }
-                    } catch (IOException e) {
-                        results.add("שגיאה בקריאת קובץ: " + amudFile.getPath());
                     }
+                } catch (NumberFormatException e) {
+                    // דילוג על תיקיות שאינן מספרי דפים
                 }
-            } catch (NumberFormatException e) {
-                // דילוג על תיקיות שאינן מספרי דפים
             }
         }
         
@@ -268,4 +292,21 @@ public class SearchEngine {
         
         return results;
     }
+
+    private static void collectMatches(BufferedReader reader, String masechet, int dafNum, String amud,
+                                       String quote, List<String> results) throws IOException {
+        String line;
+        int lineNumber = 0;
+        
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            
+            if (line.contains(quote)) {
+                String hebrewAmud = amud.equals("alef") ? "א" : "ב"; 
+                results.add("נמצא במסכת " + masechet + " דף " + dafNum + 
+                           " עמוד " + hebrewAmud + " (שורה " + lineNumber + "): " + 
+                           highlightMatch(line, quote, false));
+            }
+        }
+    }
 }
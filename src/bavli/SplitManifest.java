@@ -0,0 +1,252 @@
+package bavli;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Manifest of per-amud and per-tractate content hashes for the {@code pages/} tree, used by the
+ * incremental re-split: the new source is parsed as usual, but only amudim whose hash differs from
+ * what is on disk are written, and amudim that disappeared from the source are deleted.
+ */
+public class SplitManifest {
+
+    /** Default manifest location, next to the {@code pages/} directory. */
+    public static final String MANIFEST_FILE = "pages.manifest";
+
+    private static final String HEADER = "# bavli split manifest v1";
+
+    /** Page keys (same format as the page cache keys) that an incremental re-split added, rewrote or deleted. */
+    public static class ChangeSet {
+        public final List<String> added = new ArrayList<>();
+        public final List<String> modified = new ArrayList<>();
+        public final List<String> deleted = new ArrayList<>();
+        public final Set<String> changedMasechtot = new TreeSet<>();
+        int unchangedMasechtot;
+
+        public boolean isEmpty() {
+            return added.isEmpty() && modified.isEmpty() && deleted.isEmpty();
+        }
+
+        /** @return all changed page keys */
+        public List<String> allKeys() {
+            List<String> keys = new ArrayList<>(added);
+            keys.addAll(modified);
+            keys.addAll(deleted);
+            return keys;
+        }
+
+        @Override
+        public String toString() {
+            return "נוספו " + added.size() + " עמודים, עודכנו " + modified.size() + ", נמחקו " + deleted.size()
+                    + " | מסכתות שהשתנו: " + (changedMasechtot.isEmpty() ? "אין" : String.join(", ", changedMasechtot))
+                    + " | מסכתות ללא שינוי: " + unchangedMasechtot;
+        }
+    }
+
+    /**
+     * Re-splits {@code source} into {@code pagesDir}, touching only amudim whose content changed.
+     * Without a manifest the current tree is hashed first, so the first run after a full split is incremental too.
+     */
+    public static ChangeSet resplit(File source, File pagesDir, File manifestFile) throws IOException {
+        Map<String, String> oldHashes = manifestFile.isFile() ? read(manifestFile) : hashTree(pagesDir);
+        Map<String, String> diskHashes = new ConcurrentHashMap<>(oldHashes); // מה שנמצא כרגע בדיסק
+        Map<String, String> newHashes = new ConcurrentHashMap<>();
+        Set<String> restored = ConcurrentHashMap.newKeySet(); // עמודים שחסרו בדיסק ונכתבו מחדש
+
+        ParallelSplitter.split(source, Runtime.getRuntime().availableProcessors(), (masechet, daf, amud, content) -> {
+            if (daf < 2) return; // כמו בפיצול הרגיל - דפים מתחת ל-2 לא נשמרים
+            String key = entryKey(masechet, daf, amud == 'א' ? "alef" : "bet");
+            String hash = hash(content);
+            newHashes.put(key, hash);
+            boolean exists = PageCodec.amudExists(new File(pagesDir, masechet + "/" + daf), amud == 'א' ? "alef" : "bet");
+            if (hash.equals(diskHashes.get(key)) && exists) {
+                return; // התוכן לא השתנה - אין צורך לכתוב
+            }
+            FileManager.savePageToFile(pagesDir, masechet, daf, amud, content);
+            diskHashes.put(key, hash);
+            if (!exists) restored.add(key);
+        });
+
+        ChangeSet changes = new ChangeSet();
+        for (Map.Entry<String, String> entry : newHashes.entrySet()) {
+            String oldHash = oldHashes.get(entry.getKey());
+            if (oldHash == null) {
+                changes.added.add(cacheKey(entry.getKey()));
+            } else if (!oldHash.equals(entry.getValue()) || restored.contains(entry.getKey())) {
+                // עמוד שנכתב כמה פעמים וחזר לתוכן הקודם אינו נחשב שינוי
+                changes.modified.add(cacheKey(entry.getKey()));
+            }
+        }
+        for (String key : oldHashes.keySet()) {
+            if (!newHashes.containsKey(key)) {
+                deletePage(pagesDir, key);
+                changes.deleted.add(cacheKey(key));
+            }
+        }
+        for (String key : changes.allKeys()) {
+            changes.changedMasechtot.add(masechetOf(key));
+        }
+
+        Map<String, String> oldTractates = tractateHashes(oldHashes);
+        Map<String, String> newTractates = tractateHashes(newHashes);
+        for (Map.Entry<String, String> entry : newTractates.entrySet()) {
+            if (entry.getValue().equals(oldTractates.get(entry.getKey())) && !changes.changedMasechtot.contains(entry.getKey())) {
+                changes.unchangedMasechtot++;
+            }
+        }
+        Collections.sort(changes.added);
+        Collections.sort(changes.modified);
+        Collections.sort(changes.deleted);
+
+        write(manifestFile, newHashes);
+        return changes;
+    }
+
+    /** Removes the default manifest; called after a full split, which rewrites the tree without tracking hashes. */
+    public static void discard() {
+        AppConfig.dataFile(MANIFEST_FILE).delete();
+    }
+
+    // מפתח פנימי במניפסט: מסכת/דף/עמוד (שמות מסכת יכולים להכיל רווחים אך לא '/')
+    private static String entryKey(String masechet, int daf, String amudName) {
+        return masechet + "/" + daf + "/" + amudName;
+    }
+
+    private static String masechetOf(String cacheKey) {
+        int amudSep = cacheKey.lastIndexOf('_');
+        int dafSep = cacheKey.lastIndexOf('_', amudSep - 1);
+        return cacheKey.substring(0, dafSep);
+    }
+
+    private static String cacheKey(String entryKey) {
+        String[] parts = splitKey(entryKey);
+        return parts[0] + "_" + parts[1] + "_" + parts[2];
+    }
+
+    private static String[] splitKey(String entryKey) {
+        int amudSep = entryKey.lastIndexOf('/');
+        int dafSep = entryKey.lastIndexOf('/', amudSep - 1);
+        return new String[] {entryKey.substring(0, dafSep), entryKey.substring(dafSep + 1, amudSep),
+                             entryKey.substring(amudSep + 1)};
+    }
+
+    private static void deletePage(File pagesDir, String entryKey) {
+        String[] parts = splitKey(entryKey);
+        File dafDir = new File(pagesDir, parts[0] + "/" + parts[1]);
+        PageCodec.deleteAmud(dafDir, parts[2]);
+        String[] left = dafDir.list();
+        if (left != null && left.length == 0) {
+            dafDir.delete();
+            File masechetDir = dafDir.getParentFile();
+            String[] dafs = masechetDir.list();
+            if (dafs != null && dafs.length == 0) masechetDir.delete();
+        }
+    }
+
+    /** Hashes every amud file currently under {@code pagesDir}. */
+    static Map<String, String> hashTree(File pagesDir) throws IOException {
+        Map<String, String> hashes = new HashMap<>();
+        File[] masechetDirs = pagesDir.listFiles(File::isDirectory);
+        if (masechetDirs == null) return hashes;
+        for (File masechetDir : masechetDirs) {
+            File[] dafDirs = masechetDir.listFiles(File::isDirectory);
+            if (dafDirs == null) continue;
+            for (File dafDir : dafDirs) {
+                int daf;
+                try {
+                    daf = Integer.parseInt(dafDir.getName());
+                } catch (NumberFormatException e) {
+                    continue; // דילוג על תיקיות שאינן מספרי דפים
+                }
+                for (String amudName : new String[] {"alef", "bet"}) {
+                    String text = PageCodec.readAmud(dafDir, amudName); // גיבוב התוכן, לא הקובץ - זהה לדחוס ולרגיל
+                    if (text != null) {
+                        hashes.put(entryKey(masechetDir.getName(), daf, amudName), hash(text));
+                    }
+                }
+            }
+        }
+        return hashes;
+    }
+
+    /** Hash of a tractate: digest over its sorted (daf, amud, hash) entries. */
+    private static Map<String, String> tractateHashes(Map<String, String> amudHashes) {
+        Map<String, List<String>> lines = new TreeMap<>();
+        for (Map.Entry<String, String> entry : amudHashes.entrySet()) {
+            String[] parts = splitKey(entry.getKey());
+            lines.computeIfAbsent(parts[0], k -> new ArrayList<>())
+                 .add(parts[1] + " " + parts[2] + " " + entry.getValue());
+        }
+        Map<String, String> result = new TreeMap<>();
+        for (Map.Entry<String, List<String>> entry : lines.entrySet()) {
+            Collections.sort(entry.getValue());
+            result.put(entry.getKey(), hash(String.join("\n", entry.getValue())));
+        }
+        return result;
+    }
+
+    static Map<String, String> read(File manifestFile) throws IOException {
+        Map<String, String> hashes = new HashMap<>();
+        String masechet = null;
+        for (String line : Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith("#") || line.isEmpty()) continue;
+            String[] parts = line.split("\t");
+            if (parts[0].equals("M")) {
+                masechet = parts[1];
+            } else if (parts[0].equals("A") && masechet != null && parts.length == 4) {
+                hashes.put(entryKey(masechet, Integer.parseInt(parts[1]), parts[2]), parts[3]);
+            }
+        }
+        return hashes;
+    }
+
+    static void write(File manifestFile, Map<String, String> amudHashes) throws IOException {
+        Map<String, String> tractates = tractateHashes(amudHashes);
+        Map<String, List<String[]>> byMasechet = new TreeMap<>();
+        for (Map.Entry<String, String> entry : amudHashes.entrySet()) {
+            String[] parts = splitKey(entry.getKey());
+            byMasechet.computeIfAbsent(parts[0], k -> new ArrayList<>())
+                      .add(new String[] {parts[1], parts[2], entry.getValue()});
+        }
+
+        File temp = new File(manifestFile.getPath() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(HEADER + "\n");
+            for (Map.Entry<String, List<String[]>> entry : byMasechet.entrySet()) {
+                writer.write("M\t" + entry.getKey() + "\t" + tractates.get(entry.getKey()) + "\n");
+                entry.getValue().sort(Comparator.comparingInt((String[] a) -> Integer.parseInt(a[0])).thenComparing(a -> a[1]));
+                for (String[] amud : entry.getValue()) {
+                    writer.write("A\t" + amud[0] + "\t" + amud[1] + "\t" + amud[2] + "\n");
+                }
+            }
+        }
+        Files.move(temp.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Hash of page text as it is written to disk (default charset, like {@link FileWriter}). */
+    static String hash(String content) {
+        return hex(digest().digest(content.getBytes(Charset.defaultCharset())));
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
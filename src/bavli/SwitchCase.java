@@ -112,8 +112,10 @@ public class SwitchCase {
                     if (fullTextPath.trim().isEmpty()) {
                         fullTextPath = "C:\\Users\\nafta\\Desktop\\java\\BavliManager\\bavli.txt";
                     }
-                    String fullText = FileManager.loadFullText(fullTextPath);
-                    System.out.println(fullText); // הדפסת הטקסט המלא של התלמוד
+                    // הדפסה בקטעים ישירות מהקובץ - בלי לטעון את כל התלמוד לזיכרון
+                    if (FileManager.streamFullText(fullTextPath, chunk -> System.out.append(chunk))) {
+                        System.out.println();
+                    }
                 break;
 
                 case "5":
@@ -124,12 +126,33 @@ public class SwitchCase {
                 case "6":
                     System.out.print("הכנס נתיב לקובץ bavli.txt: ");
                     String path = scanner.nextLine();
-                    FileManager.splitFile(path); // פיצול הקובץ הראשי לדפים
+                    System.out.println("1. פיצול רגיל");
+                    System.out.println("2. פיצול מקבילי על כל הליבות");
+                    System.out.println("3. עדכון מצטבר - כתיבת העמודים שהשתנו בלבד");
+                    System.out.println("4. דחיסת העמודים הקיימים עם מילון מאומן (ללא פיצול)");
+                    System.out.println("5. אריזה מחדש של העמודים לקובץ הארוז (ללא פיצול)");
+                    String splitMode = scanner.nextLine();
+                    if (splitMode.equals("5")) {
+                        FileManager.packPages(); // כולל את העמודים שהשתנו מאז האריזה הקודמת
+                    } else if (splitMode.equals("4")) {
+                        FileManager.compressPages(); // דחיסת עץ הדפים
+                    } else if (splitMode.equals("2")) {
+                        FileManager.splitFileParallel(path); // פיצול מקבילי לפי מסכתות
+                    } else if (splitMode.equals("3")) {
+                        SplitManifest.ChangeSet changes = FileManager.splitFileIncremental(path); // עדכון מצטבר
+                        if (changes != null && !changes.isEmpty()) {
+                            System.out.println("עמודים שהשתנו:");
+                            for (String key : changes.allKeys()) {
+                                System.out.println("- " + key);
+                            }
+                        }
+                    } else {
+                        FileManager.splitFile(path); // פיצול הקובץ הראשי לדפים
+                    }
                 break;
 
                 case "7":
-                    DataIndex.loadIndex(); // טעינת אינדקס המסכתות
-                    DataIndex.buildMishnaIndex(); // בניית אינדקס משניות 
+                    DataIndex.loadAllIndexes(); // אינדקס המסכתות ואינדקס המשניות בסריקה אחת
                     System.out.println("אינדקסים נטענו בהצלחה");
                     
                     // הצגת מידע מהאינדקס
@@ -409,9 +432,15 @@ public class SwitchCase {
                         break;
                         
                         case "2": // הצגת מידע על המטמון
-                            System.out.println("גודל נוכחי של המטמון: " + CacheManager.getSize() + " פריטים");
-                            System.out.println("גודל מקסימלי של המטמון: " + CacheManager.getMaxSize() + " פריטים");
-                            System.out.println("המטמון מנוהל כ-LinkedHashMap עם מדיניות LRU (העמוד שנגש אליו הכי פחות לאחרונה יורד)");
+                            System.out.println("גודל נוכחי של המטמון: " + CacheManager.getSize() + " פריטים, " + CacheManager.getWeightedSize() / 1024 + "KB");
+                            System.out.println("תקציב המטמון: " + CacheManager.getEffectiveMaxBytes() / 1024 + "KB מתוך "
+                                    + CacheManager.getMaxBytes() / 1024 + "KB (הגדרה " + CacheManager.MAX_BYTES_SETTING + ")");
+                            System.out.println(CacheManager.getPolicyDescription());
+                            System.out.println("שכבה חמה (מחוץ לערימה): " + CacheManager.getWarmSize() + " פריטים, "
+                                    + CacheManager.getWarmUsedBytes() / 1024 + "KB מתוך " + CacheManager.getWarmCapacity() / 1024 + "KB");
+                            System.out.println(CacheManager.stats().toDisplayString());
+                            System.out.println(PagePrefetcher.getSummary());
+                            System.out.println(DerivedCache.getSummary());
                         break;
                         
                         case "3": // פריטים פופולריים
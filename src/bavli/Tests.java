@@ -1,7 +1,11 @@
 package bavli;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,6 +33,25 @@ public class Tests {
         
         System.out.println("=== מתחיל הרצת מערך בדיקות מקיף ===");
         
+        // תמונת האינדקס של הבדיקות נשמרת בקובץ זמני - pages.index של המשתמש לא נמחק ולא נדרס
+        String snapshotSetting = System.getProperty(IndexSnapshot.FILE_SETTING);
+        File testSnapshot = new File(System.getProperty("java.io.tmpdir"), "bavli_tests_" + ProcessHandle.current().pid() + ".index");
+        testSnapshot.deleteOnExit();
+        System.setProperty(IndexSnapshot.FILE_SETTING, testSnapshot.getPath());
+        try {
+            runTestGroups();
+        } finally {
+            DataIndex.unloadAll(); // בלי שמירה ביציאה לקובץ של המשתמש
+            testSnapshot.delete();
+            if (snapshotSetting != null) System.setProperty(IndexSnapshot.FILE_SETTING, snapshotSetting);
+            else System.clearProperty(IndexSnapshot.FILE_SETTING);
+        }
+        
+        printTestsSummary(); // הצג סיכום של תוצאות הבדיקות
+    }
+    
+    private static void runTestGroups() {
+        
         runFileSystemTests();  // בדיקות של מערכת הקבצים
         
         runIndexTests();  // בדיקות של מערכת האינדקס
@@ -41,7 +64,33 @@ public class Tests {
         
         runHebrewNumberTests(); // בדיקות המרת מספרים עבריים
         
-        printTestsSummary(); // הצג סיכום של תוצאות הבדיקות
+        runPackedCorpusTests(); // בדיקות הקובץ הארוז
+        
+        runParallelSplitTests(); // בדיקות פיצול מקבילי
+        
+        runIncrementalSplitTests(); // בדיקות עדכון מצטבר
+        
+        runPageCodecTests(); // בדיקות אחסון דחוס
+        
+        runAsyncLoadTests(); // בדיקות טעינה אסינכרונית
+        
+        runPrefetchTests(); // בדיקות טעינה מוקדמת
+        
+        runWarmTierTests(); // בדיקות השכבה החמה
+        runCacheStatsTests(); // בדיקות סטטיסטיקות המטמון
+        runWarmStartTests(); // בדיקות חימום המטמון
+        runSingleFlightTests(); // בדיקות טעינה משותפת
+        runPageKeyTests(); // בדיקות מפתחות עמודים
+        runDerivedCacheTests(); // בדיקות מטמון תוצרים
+        runPageWatcherTests(); // בדיקות מעקב אחר שינויים בקבצים
+        runMemoryPressureTests(); // בדיקות לחץ זיכרון
+        runIndexSnapshotTests(); // בדיקות תמונת אינדקס שמורה
+        runParallelMishnaIndexTests(); // בדיקות בניית אינדקס משניות במקביל
+        runCorpusScannerTests(); // בדיקות סריקת קורפוס אחת לכל האינדקסים
+        runCompactIndexTests(); // בדיקות ייצוג ארוז של האינדקס
+        runPerekIndexTests(); // בדיקות אינדקס גבולות הפרקים
+        runGematriaTests(); // בדיקות פענוח ועיצוב גימטריה
+        runLazyIndexTests(); // בדיקות טעינת אינדקס לפי דרישה
     }
     
     private static void runFileSystemTests() { // בדיקות של מערכת הקבצים
@@ -72,6 +121,18 @@ public class Tests {
             String content = FileManager.loadFullText(tempFile.getAbsolutePath());
             assertTrue("בדיקת loadFullText עם קובץ קיים", 
                     content != null && content.contains("תוכן טסט"));
+            
+            // קריאה בזרימה עם חלונות קטנים - תווים עבריים נחתכים בין חלונות וקטעים
+            String text = "מסכת ברכות פרק א\nדף ב א\nמאימתי קורין את שמע בערבין\n";
+            Files.write(tempFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder streamed = new StringBuilder();
+            int[] chunks = {0};
+            FileManager.streamFullText(tempFile, StandardCharsets.UTF_8, 7, 5, chunk -> {
+                streamed.append(chunk);
+                chunks[0]++;
+            });
+            assertEquals("בדיקת streamFullText בחלונות קטנים", text, streamed.toString());
+            assertTrue("בדיקת חלוקה לקטעים", chunks[0] > 1);
         } catch (IOException e) {
             fail("בדיקת loadFullText - שגיאת IO: " + e.getMessage());
         }
@@ -168,6 +229,65 @@ public class Tests {
         CacheManager.remove(testKey);
         assertTrue("בדיקת מחיקת ערך מהמטמון", 
                 !CacheManager.contains(testKey));
+        
+        // בדיקת תקציב בבתים - פריטים ישנים יוצאים עד שהסכום נכנס בתקציב (מופע נפרד - בלי טעינות רקע)
+        String page = new String(new char[1000]).replace('\0', 'א');
+        PageCache budgetCache = new PageCache(3 * CacheManager.weigh("k1", page), PageCache.Policy.LRU);
+        budgetCache.put("k1", page);
+        budgetCache.put("k2", page);
+        budgetCache.put("k3", page);
+        budgetCache.get("k1"); // k1 הופך לאחרון שנגשו אליו
+        budgetCache.put("k4", page);
+        assertTrue("בדיקת פינוי לפי תקציב בבתים", !budgetCache.contains("k2") && budgetCache.contains("k1")
+                && budgetCache.weightedSize() <= budgetCache.getMaxBytes());
+        budgetCache.put("huge", page + page + page + page);
+        assertTrue("בדיקת פריט גדול מהתקציב", !budgetCache.contains("huge") && budgetCache.size() == 3);
+        budgetCache.clear();
+        assertEquals("בדיקת איפוס משקל המטמון", 0L, budgetCache.weightedSize());
+        
+        // בדיקת TinyLFU - סריקה חד-פעמית לא מוציאה עמודים שנקראים שוב ושוב
+        PageCache lfuCache = new PageCache(20 * CacheManager.weigh("k100", page));
+        for (int round = 0; round < 5; round++) {
+            for (int i = 100; i < 110; i++) {
+                if (lfuCache.get("k" + i) == null) lfuCache.put("k" + i, page);
+            }
+        }
+        for (int i = 200; i < 300; i++) {
+            lfuCache.put("k" + i, page); // סריקה
+        }
+        int hotLeft = 0;
+        for (int i = 100; i < 110; i++) {
+            if (lfuCache.contains("k" + i)) hotLeft++;
+        }
+        assertEquals("בדיקת עמידות TinyLFU לסריקה", 10, hotLeft);
+        
+        // בדיקת גישה מקבילית - המשקל הכולל נשאר עקבי עם התוכן
+        PageCache concurrentCache = new PageCache(50 * CacheManager.weigh("k100", page));
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int seed = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    String key = "k" + (100 + (i * 7 + seed) % 80); // מפתחות באורך קבוע - משקל זהה
+                    if (concurrentCache.get(key) == null) concurrentCache.put(key, page);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        assertEquals("בדיקת משקל אחרי גישה מקבילית", concurrentCache.size() * CacheManager.weigh("k100", page),
+                concurrentCache.weightedSize());
+        
+        System.setProperty("bavli.test.size", "256m");
+        assertEquals("בדיקת פענוח גודל בבתים", 256L * 1024 * 1024, AppConfig.getBytes("bavli.test.size", 0));
+        System.clearProperty("bavli.test.size");
     }
     
     /**
@@ -194,6 +314,868 @@ public class Tests {
                 0, DataIndex.hebrewToNumber("ערךלאתקין"));
     }
     
+    /**
+     * בדיקות של הקובץ הארוז (כל העמודים בקובץ אחד עם טבלת מיקומים)
+     */
+    private static void runPackedCorpusTests() {
+        startTestGroup("בדיקות קובץ דפים ארוז");
+        
+        try {
+            File pagesDir = Files.createTempDirectory("bavli_pack_pages").toFile();
+            FileManager.savePageToFile(pagesDir, "ברכות", 2, 'א', "מאימתי קורין את שמע בערבית");
+            FileManager.savePageToFile(pagesDir, "ברכות", 2, 'ב', "עד סוף האשמורה הראשונה");
+            FileManager.savePageToFile(pagesDir, "שבת", 3, 'א', "יציאות השבת שתים שהן ארבע");
+            File packFile = File.createTempFile("bavli_pack", ".pack");
+            packFile.deleteOnExit();
+            
+            boolean packed = PackedCorpus.pack(pagesDir, packFile);
+            assertTrue("בדיקת אריזת תיקיית דפים", packed);
+            if (!packed) {
+                readTree(pagesDir);
+                return;
+            }
+            
+            PackedCorpus pack = PackedCorpus.open(packFile);
+            assertEquals("בדיקת מספר עמודים בקובץ הארוז", 3, pack.size());
+            assertEquals("בדיקת מסכתות בקובץ הארוז", Arrays.asList("ברכות", "שבת"), pack.getMasechtot());
+            
+            // השוואת תוכן עמוד מהקובץ הארוז לתוכן הקובץ המקורי
+            PackedCorpus.Entry entry = pack.getEntries("ברכות").get(1);
+            assertEquals("בדיקת התאמת תוכן עמוד מהקובץ הארוז", 
+                    PageCodec.readAmud(new File(pagesDir, "ברכות/2"), entry.getAmudName()), pack.read(entry));
+            
+            assertNull("בדיקת עמוד שלא קיים בקובץ הארוז", 
+                    pack.read("מסכת_לא_קיימת_999_alef"));
+            
+            // שינויים שנעשו בזמן שהקובץ הארוז היה סגור מתגלים בפתיחה הבאה
+            File alef = FileManager.savePageToFile(pagesDir, "ברכות", 2, 'א', "מאימתי קורין - נוסח מתוקן");
+            alef.setLastModified(packFile.lastModified() + 2000);
+            FileManager.savePageToFile(pagesDir, "שבת", 4, 'א', "דף שנוסף אחרי האריזה");
+            pack = PackedCorpus.open(packFile, pagesDir);
+            assertNull("בדיקת עמוד ששונה אחרי האריזה נקרא מהקובץ", pack.read("ברכות_2_alef"));
+            assertEquals("בדיקת תוכן עמוד ששונה אחרי האריזה",
+                    PageCodec.readAmud(new File(pagesDir, "ברכות/2"), "alef"), pack.read(pack.getEntries("ברכות").get(0)));
+            assertEquals("בדיקת עמוד שלא שונה נקרא מהקובץ הארוז",
+                    PageCodec.readAmud(new File(pagesDir, "ברכות/2"), "bet"), pack.read("ברכות_2_bet"));
+            assertTrue("בדיקת מסכת שנוסף לה דף נקראת מהתיקייה", pack.getEntries("שבת").isEmpty());
+            
+            // עמוד שנמחק לא נקרא מהקובץ הארוז
+            PackedCorpus.Entry bet = pack.getEntries("ברכות").get(1);
+            new File(pagesDir, "ברכות/2/bet.txt").delete();
+            new File(pagesDir, "ברכות/2/bet.txt.z").delete();
+            pack.markStale("ברכות_2_bet");
+            assertNull("בדיקת עמוד שנמחק אחרי האריזה", pack.read(bet));
+            assertNull("בדיקת עמוד שנמחק לפי מפתח", pack.read("ברכות_2_bet"));
+            assertTrue("בדיקת מסכת שנמחק בה עמוד נקראת מהתיקייה", pack.getEntries("ברכות").isEmpty());
+            
+            // קובץ ריק או קטוע נדחה ב-IOException ולא בחריגת גבולות
+            byte[] bytes = Files.readAllBytes(packFile.toPath());
+            int[] lengths = {0, 10, 20, bytes.length - 1};
+            for (int length : lengths) {
+                Files.write(packFile.toPath(), Arrays.copyOf(bytes, length));
+                try {
+                    PackedCorpus.open(packFile);
+                    fail("בדיקת דחיית קובץ ארוז קטוע באורך " + length, "הקובץ נפתח");
+                } catch (IOException e) {
+                    assertTrue("בדיקת דחיית קובץ ארוז קטוע באורך " + length, true);
+                }
+            }
+            
+            readTree(pagesDir); // ניקוי בסיום
+        } catch (IOException | RuntimeException e) {
+            fail("בדיקת קובץ ארוז - שגיאה: " + e);
+        }
+    }
+    
+    /**
+     * בדיקות פיצול מקבילי - התוצאה חייבת להיות זהה לפיצול הרגיל
+     */
+    private static void runParallelSplitTests() {
+        startTestGroup("בדיקות פיצול מקבילי");
+        
+        try {
+            File source = File.createTempFile("bavli_split", ".txt");
+            source.deleteOnExit();
+            Files.write(source.toPath(), String.join("\n",
+                    "הקדמה",
+                    "מסכת ברכות פרק א מאימתי",
+                    "דף ב א", "משנה   מאימתי קורין", "גמרא תנא היכא קאי",
+                    "דף ב ב", "טקסט עמוד ב",
+                    "מסכת שבת פרק א יציאות",
+                    "דף ב א", "משנה   יציאות השבת",
+                    "דף ג ב", "טקסט",
+                    "מסכת ברכות פרק ב היה קורא",
+                    "דף ג א", "משנה   היה קורא").getBytes(Charset.defaultCharset()));
+            
+            File sequentialDir = Files.createTempDirectory("bavli_seq").toFile();
+            File parallelDir = Files.createTempDirectory("bavli_par").toFile();
+            
+            try (BufferedReader reader = new BufferedReader(new FileReader(source))) {
+                FileManager.splitLines(reader, new FileManager.SplitState(), (masechet, daf, amud, content) ->
+                        FileManager.savePageToFile(sequentialDir, masechet, daf, amud, content), false);
+            }
+            ParallelSplitter.split(source, parallelDir, 4);
+            
+            Map<String, String> sequential = readTree(sequentialDir);
+            Map<String, String> parallel = readTree(parallelDir);
+            assertTrue("בדיקת יצירת עמודים בפיצול", !sequential.isEmpty());
+            assertEquals("בדיקת זהות פיצול מקבילי לפיצול רגיל", sequential, parallel);
+        } catch (IOException e) {
+            fail("בדיקת פיצול מקבילי - שגיאת IO: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * בדיקות עדכון מצטבר - רק עמודים שהשתנו נכתבים או נמחקים
+     */
+    private static void runIncrementalSplitTests() {
+        startTestGroup("בדיקות עדכון מצטבר");
+        
+        try {
+            File source = File.createTempFile("bavli_incr", ".txt");
+            source.deleteOnExit();
+            File pagesDir = Files.createTempDirectory("bavli_incr_pages").toFile();
+            File manifest = new File(pagesDir, "manifest.txt");
+            
+            Files.write(source.toPath(), String.join("\n",
+                    "מסכת ברכות פרק א", "דף ב א", "טקסט א", "דף ב ב", "טקסט ב",
+                    "מסכת שבת פרק א", "דף ב א", "טקסט שבת").getBytes(Charset.defaultCharset()));
+            SplitManifest.ChangeSet first = SplitManifest.resplit(source, pagesDir, manifest);
+            assertTrue("בדיקת עמודים חדשים בפיצול ראשון", first.added.size() == 4 && first.modified.isEmpty());
+            
+            SplitManifest.ChangeSet same = SplitManifest.resplit(source, pagesDir, manifest);
+            assertTrue("בדיקת פיצול חוזר ללא שינויים", same.isEmpty());
+            
+            // שינוי עמוד אחד ומחיקת מסכת שבת
+            Files.write(source.toPath(), String.join("\n",
+                    "מסכת ברכות פרק א", "דף ב א", "טקסט א", "דף ב ב", "טקסט ב מתוקן").getBytes(Charset.defaultCharset()));
+            SplitManifest.ChangeSet changed = SplitManifest.resplit(source, pagesDir, manifest);
+            assertEquals("בדיקת זיהוי עמוד ששונה", Arrays.asList("ברכות_2_bet"), changed.modified);
+            assertTrue("בדיקת מחיקת עמודים שהוסרו", changed.deleted.size() == 2
+                    && !new File(pagesDir, "שבת").exists());
+            assertTrue("בדיקת תוכן העמוד המעודכן", FileManager.readPageFile(
+                    new File(pagesDir, "ברכות/2/bet.txt")).contains("מתוקן"));
+            
+            readTree(pagesDir); // ניקוי בסיום
+        } catch (IOException e) {
+            fail("בדיקת עדכון מצטבר - שגיאת IO: " + e.getMessage());
+        }
+    }
+    
+    private static void runPageCodecTests() {
+        startTestGroup("בדיקות אחסון דחוס");
+        
+        try {
+            String text = "מתני' מאימתי קורין את שמע בערבין\nגמ' תנא היכא קאי דקתני מאימתי\nאמר רבי יוחנן אמר רבי שמעון\n";
+            byte[] compressed = PageCodec.compress(text);
+            assertEquals("בדיקת דחיסה ופריסה", text, PageCodec.decompress(compressed));
+            assertTrue("בדיקת הקטנת הגודל", compressed.length < text.getBytes("UTF-8").length);
+            
+            File dafDir = Files.createTempDirectory("bavli_codec").toFile();
+            Files.write(new File(dafDir, "alef.txt.z").toPath(), compressed);
+            assertEquals("בדיקת קריאת עמוד דחוס", text, PageCodec.readAmud(dafDir, "alef"));
+            assertTrue("בדיקת עמוד חסר", PageCodec.readAmud(dafDir, "bet") == null);
+            try (BufferedReader reader = PageCodec.openAmud(new File(dafDir, "alef.txt.z"))) {
+                assertEquals("בדיקת קריאת שורות מעמוד דחוס", "מתני' מאימתי קורין את שמע בערבין", reader.readLine());
+            }
+            assertEquals("בדיקת שם עמוד דחוס", "alef", PageCodec.amudNameOf(new File(dafDir, "alef.txt.z")));
+            
+            readTree(dafDir); // ניקוי בסיום
+        } catch (IOException e) {
+            fail("בדיקת אחסון דחוס - שגיאת IO: " + e.getMessage());
+        }
+    }
+    
+    private static void runAsyncLoadTests() {
+        startTestGroup("בדיקות טעינה אסינכרונית");
+        
+        CacheManager.clear();
+        String expected = FileManager.loadPage("ברכות", 2, 'א');
+        CacheManager.clear();
+        assertEquals("בדיקת loadPageAsync", expected, FileManager.loadPageAsync("ברכות", 2, 'א').join());
+        
+        List<String> pages = FileManager.loadPages("ברכות", 2, 3);
+        assertEquals("בדיקת מספר העמודים ב-loadPages", 4, pages.size());
+        assertEquals("בדיקת סדר העמודים ב-loadPages", expected, pages.get(0));
+        assertEquals("בדיקת עמוד חסר ב-loadPages", "", FileManager.loadPages("מסכת_לא_קיימת", 2, 2).get(1));
+    }
+    
+    private static void runPrefetchTests() {
+        startTestGroup("בדיקות טעינה מוקדמת");
+        
+        PagePrefetcher.reset();
+        int masechet = TractateIds.id("ברכות"); // נבדקים רק המונים - הדפים עצמם לא חייבים להיות קיימים
+        PagePrefetcher.recordAccess(masechet, 2, 0);
+        PagePrefetcher.recordAccess(masechet, 2, 1);
+        assertEquals("בדיקת טעינה מוקדמת אחרי קריאה רציפה", 2L, PagePrefetcher.getIssued());
+        
+        PagePrefetcher.recordAccess(masechet, 3, 0);
+        assertEquals("בדיקת פגיעה בעמוד שנטען מראש", 1L, PagePrefetcher.getHits());
+        assertEquals("בדיקת הגדלת החלון", 5L, PagePrefetcher.getIssued());
+        
+        PagePrefetcher.recordAccess(masechet, 20, 0);
+        assertEquals("בדיקת ספירת בזבוז כשהרצף נשבר", 4L, PagePrefetcher.getWasted());
+        PagePrefetcher.reset();
+    }
+    
+    private static void runWarmTierTests() {
+        startTestGroup("בדיקות השכבה החמה");
+        
+        String page = "מאימתי קורין את שמע בערבין "; // 50 בתים ב-UTF-8
+        int pageBytes = page.getBytes(StandardCharsets.UTF_8).length;
+        WarmTier warm = new WarmTier(3 * pageBytes + 10);
+        warm.put("a", page);
+        warm.put("b", page);
+        warm.put("c", page);
+        assertEquals("בדיקת שליפה מהשכבה החמה", page, warm.take("b"));
+        assertTrue("בדיקת הסרה אחרי קידום", !warm.contains("b"));
+        warm.put("d", page + "ד"); // עוטף את הטבעת ודורס את העמוד הישן ביותר
+        assertTrue("בדיקת דריסת העמוד הישן ביותר", !warm.contains("a") && warm.contains("c"));
+        assertEquals("בדיקת קריאה אחרי עטיפה", page + "ד", warm.take("d"));
+        
+        // עמודים שיוצאים מהשכבה שבזיכרון עוברים לשכבה החמה
+        WarmTier spill = new WarmTier(1024 * 1024);
+        PageCache hot = new PageCache(2 * CacheManager.weigh("k1", page), PageCache.Policy.LRU);
+        hot.setEvictionListener((key, value, cause) -> spill.put(key, value));
+        hot.put("k1", page);
+        hot.put("k2", page);
+        hot.put("k3", page);
+        assertTrue("בדיקת מעבר עמוד מפונה לשכבה החמה", !hot.contains("k1") && page.equals(spill.take("k1")));
+    }
+    
+    private static void runCacheStatsTests() {
+        startTestGroup("בדיקות סטטיסטיקות המטמון");
+        
+        CacheStats before = CacheManager.stats();
+        CacheManager.put("stats_test", "טקסט");
+        CacheManager.get("stats_test");
+        CacheManager.get("stats_missing");
+        CacheManager.recordLoad(3_000_000, false);
+        CacheManager.remove("stats_test");
+        CacheStats after = CacheManager.stats();
+        
+        assertEquals("בדיקת סכום הבקשות", after.hitCount() + after.warmHitCount() + after.missCount(), after.requestCount());
+        assertTrue("בדיקת ספירת פגיעה והחטאה", after.hitCount() > before.hitCount() && after.missCount() > before.missCount());
+        assertEquals("בדיקת ספירת טעינה שנכשלה", before.loadFailureCount() + 1, after.loadFailureCount());
+        assertTrue("בדיקת אחוזון עליון", after.loadP99Nanos() >= after.loadP50Nanos());
+        assertEquals("בדיקת ספירת ביטול ידני", before.explicitRemovalCount() + 1, after.explicitRemovalCount());
+        
+        // סיבות פינוי מגיעות למאזין של המטמון
+        List<PageCache.EvictionCause> causes = new ArrayList<>();
+        PageCache cache = new PageCache(2 * CacheManager.weigh("k1", "עמוד"), PageCache.Policy.LRU);
+        cache.setEvictionListener((key, value, cause) -> causes.add(cause));
+        cache.put("k1", "עמוד");
+        cache.put("k2", "עמוד");
+        cache.put("k3", "עמוד");
+        assertEquals("בדיקת סיבת פינוי לפי גודל", List.of(PageCache.EvictionCause.SIZE), causes);
+    }
+    
+    private static void runWarmStartTests() {
+        startTestGroup("בדיקות חימום המטמון");
+        
+        try {
+            CacheManager.clear();
+            CacheManager.put("ברכות_2_alef", "עמוד");
+            CacheManager.put("ברכות_3_alef", "עמוד");
+            CacheManager.get("ברכות_3_alef"); // העמוד החם יותר
+            File file = File.createTempFile("hotkeys", ".txt");
+            file.deleteOnExit();
+            assertTrue("בדיקת שמירת העמודים החמים", CacheWarmer.saveHotKeys(file, 10));
+            List<String> saved = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            assertEquals("בדיקת מספר העמודים שנשמרו", 2, saved.size());
+            if (saved.size() == 2) {
+                assertEquals("בדיקת דירוג לפי פגיעות", List.of("ברכות_3_alef", "ברכות_2_alef"), saved);
+            }
+            
+            // החימום קורא מהדיסק - רק ברכות ב. קיים בכל קורפוס בדיקה
+            Files.write(file.toPath(), List.of("ברכות_99999_alef", "ברכות_2_alef"), StandardCharsets.UTF_8);
+            CacheManager.clear();
+            assertEquals("בדיקת טעינה מחדש ודילוג על עמוד חסר", 1, CacheWarmer.warmUp(file, 10, Long.MAX_VALUE));
+            assertTrue("בדיקת עמודים במטמון אחרי חימום", CacheManager.contains("ברכות_2_alef"));
+            
+            CacheManager.clear();
+            assertEquals("בדיקת מגבלת מספר עמודים", 0, CacheWarmer.warmUp(file, 0, Long.MAX_VALUE));
+            assertTrue("בדיקת אין טעינה מעבר למגבלה", !CacheManager.contains("ברכות_2_alef"));
+            CacheManager.clear();
+        } catch (IOException e) {
+            fail("שגיאה בבדיקת חימום המטמון: " + e.getMessage());
+        }
+    }
+    
+    private static void runSingleFlightTests() {
+        startTestGroup("בדיקות טעינה משותפת");
+        
+        String key = "single_flight_test";
+        CacheManager.remove(key);
+        java.util.concurrent.atomic.AtomicInteger loads = new java.util.concurrent.atomic.AtomicInteger();
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(8);
+        List<java.util.concurrent.Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> CacheManager.get(key, k -> {
+                loads.incrementAndGet();
+                try {
+                    release.await(); // מחזיק את הטעינה פתוחה עד שכל התהליכונים מבקשים
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "תוכן";
+            })));
+        }
+        try {
+            Thread.sleep(200);
+            release.countDown();
+            boolean allEqual = true;
+            for (java.util.concurrent.Future<String> result : results) {
+                allEqual &= "תוכן".equals(result.get());
+            }
+            assertTrue("בדיקת תוצאה זהה לכל המבקשים", allEqual);
+        } catch (Exception e) {
+            fail("שגיאה בטעינה משותפת: " + e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals("בדיקת טעינה אחת בלבד", 1, loads.get());
+        assertEquals("בדיקת שמירה במטמון", "תוכן", CacheManager.get(key));
+        
+        assertEquals("בדיקת ערך חסר", null, CacheManager.get("single_flight_missing", k -> null));
+        assertTrue("בדיקת ערך חסר לא נשמר", !CacheManager.contains("single_flight_missing"));
+        CacheManager.remove(key);
+    }
+    
+    private static void runPageKeyTests() {
+        startTestGroup("בדיקות מפתחות עמודים");
+        
+        for (String name : new String[] {"ברכות", "בבא קמא", "Bava-Kamma!", " שבת, דף"}) {
+            assertEquals("בדיקת נרמול כמו הביטוי הרגולרי: " + name,
+                    name.replaceAll("[^א-תa-zA-Z0-9 ]", "").toLowerCase(), TractateIds.normalize(name));
+        }
+        assertEquals("בדיקת מזהה זהה לכתיב אחר", TractateIds.id("ברכות"), TractateIds.id("ברכות!"));
+        assertEquals("בדיקת מסכת לא מוכרת", -1, TractateIds.find("מסכת שלא קיימת"));
+        assertEquals("בדיקת חיפוש מסכת שאינה בקורפוס", -1, TractateIds.lookup("מסכת שלא קיימת"));
+        assertEquals("בדיקת טעינת עמוד ממסכת שאינה בקורפוס", "", FileManager.loadPage("מסכת שלא קיימת", 2, 'א'));
+        assertEquals("בדיקת מסכת שאינה בקורפוס לא נרשמת", -1, TractateIds.find("מסכת שלא קיימת"));
+        assertTrue("בדיקת חיפוש מסכת מהקורפוס", TractateIds.lookup("ברכות") >= 0);
+        
+        long key = PageKey.of("ברכות", 117, 'ב'); // מסכת מהקורפוס; הדף עצמו לא חייב להיות קיים
+        assertEquals("בדיקת שם המסכת מהמפתח", "ברכות", TractateIds.name(PageKey.tractateId(key)));
+        assertEquals("בדיקת דף מהמפתח", 117, PageKey.daf(key));
+        assertEquals("בדיקת עמוד מהמפתח", "bet", PageKey.amudName(key));
+        assertEquals("בדיקת צורת המחרוזת", "ברכות_117_bet", PageKey.toString(key));
+        assertEquals("בדיקת מפתח של מסכת שאינה בקורפוס", PageKey.MISSING, PageKey.of("מסכת שלא קיימת", 2, 'א'));
+        assertEquals("בדיקת שם למזהה חסר", null, TractateIds.name(PageKey.tractateId(PageKey.MISSING)));
+        assertEquals("בדיקת מחרוזת של מפתח חסר", "", PageKey.toString(PageKey.MISSING));
+        assertEquals("בדיקת ספרה כעמוד", PageKey.of("ברכות", 2, 'א'), PageKey.of("ברכות", 2, '1'));
+        
+        LongObjectMap<String> map = new LongObjectMap<>();
+        for (long i = 0; i < 1000; i++) map.put(i << 32, "ערך" + i); // מפתחות שנבדלים רק בביטים הגבוהים
+        for (long i = 0; i < 1000; i += 2) map.remove(i << 32);
+        boolean consistent = map.size() == 500;
+        for (long i = 0; i < 1000; i++) {
+            consistent &= (i % 2 == 0) ? map.get(i << 32) == null : ("ערך" + i).equals(map.get(i << 32));
+        }
+        assertTrue("בדיקת מפה פרימיטיבית אחרי הוספה ומחיקה", consistent);
+        assertEquals("בדיקת מפתחות ממוינים", 1L << 32, map.keys()[0]);
+        
+        CacheManager.clear();
+        String viaString = FileManager.readPage("ברכות", 2, "alef");
+        assertTrue("בדיקת קריאה לפי מפתח ארוז", !viaString.isEmpty()
+                && viaString == FileManager.readPage(PageKey.of("ברכות", 2, 'א')));
+    }
+    
+    private static void runDerivedCacheTests() {
+        startTestGroup("בדיקות מטמון תוצרים");
+        
+        int[] calls = new int[1];
+        List<String> sources = new ArrayList<>(List.of("עמוד א", "עמוד ב"));
+        DerivedCache.get("test:derived", sources, () -> ++calls[0]);
+        DerivedCache.get("test:derived", new ArrayList<>(sources), () -> ++calls[0]);
+        assertEquals("בדיקת שימוש חוזר כשהמקור לא השתנה", 1, calls[0]);
+        sources.set(1, "עמוד ב מתוקן");
+        assertEquals("בדיקת בנייה מחדש כשהמקור השתנה", 2, (int) DerivedCache.get("test:derived", sources, () -> ++calls[0]));
+        
+        List<String> first = MishnaExtractor.getMishnayotOfPerek("ברכות", 1);
+        long builds = DerivedCache.getBuilds();
+        List<String> second = MishnaExtractor.getMishnayotOfPerek("ברכות", 1);
+        assertEquals("בדיקת משניות זהות מהמטמון", first, second);
+        assertEquals("בדיקת אין חילוץ חוזר", builds, DerivedCache.getBuilds());
+        second.add("שינוי של הקורא");
+        assertEquals("בדיקת הרשימה השמורה לא משתנה", first, MishnaExtractor.getMishnayotOfPerek("ברכות", 1));
+    }
+    
+    private static void runPageWatcherTests() {
+        startTestGroup("בדיקות מעקב אחר שינויים בקבצים");
+        
+        // עץ זמני עם מסכת שאינה בקורפוס - קבצי המשתמש לא נוגעים
+        File root;
+        PageWatcher watcher;
+        try {
+            root = Files.createTempDirectory("bavli_watch").toFile();
+            watcher = PageWatcher.watch(new File(root, "pages"), new File(root, "user_notes"), 100);
+        } catch (IOException e) {
+            fail("שגיאה בהפעלת המעקב: " + e.getMessage());
+            return;
+        }
+        String key = "מעקב_2_alef";
+        File dafDir = new File(root, "pages/מעקב/2");
+        try {
+            long batches = watcher.batches();
+            new File(root, "pages").mkdir();
+            waitFor(() -> watcher.batches() > batches);
+            assertTrue("בדיקת מעקב אחרי תיקיית דפים שנוצרה אחרי ההפעלה", watcher.batches() > batches);
+            
+            long created = watcher.batches();
+            new File(root, "pages/מעקב").mkdir();
+            waitFor(() -> watcher.batches() > created);
+            CacheManager.put(key, "ישן");
+            dafDir.mkdir();
+            Files.write(new File(dafDir, "alef.txt").toPath(), "עמוד חדש\n".getBytes(StandardCharsets.UTF_8));
+            waitFor(() -> !CacheManager.contains(key));
+            assertTrue("בדיקת פינוי עמוד שנכתב בדף חדש", !CacheManager.contains(key));
+            
+            CacheManager.put(key, "ישן");
+            Files.write(new File(dafDir, "alef.txt").toPath(), "תיקון בזמן ריצה\n".getBytes(StandardCharsets.UTF_8));
+            waitFor(() -> !CacheManager.contains(key));
+            assertTrue("בדיקת פינוי עמוד שהשתנה בדף שנוצר בזמן המעקב", !CacheManager.contains(key));
+            watcher.close();
+            
+            // דפים קיימים לא נרשמים - תיקיית הדפים ותיקיית המסכת בלבד
+            for (int daf = 3; daf < 20; daf++) new File(root, "pages/מעקב/" + daf).mkdir();
+            PageWatcher existing = PageWatcher.watch(new File(root, "pages"), new File(root, "user_notes"), 100);
+            assertEquals("בדיקת רישום ברמת המסכת בלבד", 2, existing.watchedDirectories());
+            existing.close();
+            readTree(root); // ניקוי בסיום
+        } catch (IOException | RuntimeException e) {
+            fail("שגיאה בבדיקת מעקב הקבצים: " + e);
+        } finally {
+            watcher.close();
+            CacheManager.remove(key);
+        }
+    }
+    
+    private static void runMemoryPressureTests() {
+        startTestGroup("בדיקות לחץ זיכרון");
+        
+        long mb = 1024 * 1024;
+        assertEquals("בדיקת צמצום בחצי", 16 * mb, MemoryPressureMonitor.nextLimit(32 * mb, 32 * mb, 0.9, 0.8, 0.6));
+        assertEquals("בדיקת רצפת הצמצום", mb, MemoryPressureMonitor.nextLimit(mb, 32 * mb, 0.95, 0.8, 0.6));
+        assertEquals("בדיקת ללא שינוי בין הספים", 8 * mb, MemoryPressureMonitor.nextLimit(8 * mb, 32 * mb, 0.7, 0.8, 0.6));
+        assertEquals("בדיקת הרחבה פי 2", 16 * mb, MemoryPressureMonitor.nextLimit(8 * mb, 32 * mb, 0.3, 0.8, 0.6));
+        assertEquals("בדיקת הרחבה עד התקציב המוגדר", 32 * mb, MemoryPressureMonitor.nextLimit(24 * mb, 32 * mb, 0.3, 0.8, 0.6));
+        
+        long configured = CacheManager.getMaxBytes();
+        CacheStats before = CacheManager.stats();
+        CacheManager.setPressureLimit(configured / 4);
+        assertEquals("בדיקת תקציב בפועל אחרי צמצום", configured / 4, CacheManager.getEffectiveMaxBytes());
+        assertEquals("בדיקת התקציב המוגדר לא השתנה", configured, CacheManager.getMaxBytes());
+        CacheManager.setPressureLimit(configured);
+        CacheStats after = CacheManager.stats();
+        assertEquals("בדיקת חזרה לתקציב המוגדר", configured, CacheManager.getEffectiveMaxBytes());
+        assertEquals("בדיקת ספירת צמצום בסטטיסטיקות", before.pressureShrinkCount() + 1, after.pressureShrinkCount());
+        assertEquals("בדיקת ספירת הרחבה בסטטיסטיקות", before.pressureGrowCount() + 1, after.pressureGrowCount());
+    }
+    
+    private static void runIndexSnapshotTests() {
+        startTestGroup("בדיקות תמונת אינדקס שמורה");
+        withFixtureCorpus(() -> {
+            File snapshotFile = IndexSnapshot.file();
+            DataIndex.loadIndex(); // בנייה מהקבצים ושמירה
+            DataIndex.buildMishnaIndex();
+            assertTrue("בדיקת שמירת תמונת האינדקס", snapshotFile.isFile());
+            
+            List<String> masechtot = DataIndex.getAllMasechtot();
+            assertEquals("בדיקת מסכתות הקורפוס", 2, masechtot.size());
+            Map<String, List<Integer>> dafs = new HashMap<>();
+            for (String masechet : masechtot) dafs.put(masechet, new ArrayList<>(DataIndex.getDafsForMasechet(masechet)));
+            assertEquals("בדיקת דפי מסכת מהקבצים", "[2, 3, 4, 5, 6]", String.valueOf(dafs.get("שבת")));
+            IndexSnapshot.Contents built = IndexSnapshot.read(IndexSnapshot.fingerprint());
+            assertTrue("בדיקת קריאת תמונה תואמת", built != null && built.dafs != null && built.mishna != null);
+            if (built == null || built.mishna == null) return;
+            
+            DataIndex.unloadAll();
+            DataIndex.loadIndex(); // טעינה מהתמונה
+            DataIndex.buildMishnaIndex();
+            assertEquals("בדיקת רשימת מסכתות מהתמונה", masechtot, DataIndex.getAllMasechtot());
+            boolean same = true;
+            for (String masechet : masechtot) {
+                same &= dafs.get(masechet).equals(DataIndex.getDafsForMasechet(masechet));
+            }
+            assertTrue("בדיקת דפים מהתמונה", same);
+            assertEquals("בדיקת מספר מסכתות באינדקס המשניות", built.mishna.size(), DataIndex.loadedMishna());
+            
+            File amudFile = findAmudFile(AppConfig.dataFile("pages"));
+            if (amudFile == null) {
+                fail("לא נמצא קובץ עמוד לבדיקת שינוי");
+                return;
+            }
+            long modified = amudFile.lastModified();
+            amudFile.setLastModified(modified + 2000);
+            assertTrue("בדיקת פסילת התמונה אחרי שינוי קובץ", IndexSnapshot.read(IndexSnapshot.fingerprint()) == null);
+            amudFile.setLastModified(modified);
+            assertTrue("בדיקת התמונה תואמת שוב אחרי שחזור", IndexSnapshot.read(IndexSnapshot.fingerprint()) != null);
+        });
+    }
+    
+    private static void runParallelMishnaIndexTests() {
+        startTestGroup("בדיקות בניית אינדקס משניות במקביל");
+        withFixtureCorpus(() -> {
+            String[] sequential = buildMishnaIndexWithThreads(1);
+            String[] parallel = buildMishnaIndexWithThreads(4);
+            assertTrue("בדיקת אינדקס לא ריק", sequential[0].contains("שבת 5 true 2\n"));
+            assertEquals("בדיקת אינדקס זהה בבנייה מקבילית", sequential[0], parallel[0]);
+            assertEquals("בדיקת פלט זהה בבנייה מקבילית", sequential[1], parallel[1]);
+        });
+    }
+    
+    /** @return the rebuilt Mishna index as text and the console output of the build */
+    private static String[] buildMishnaIndexWithThreads(int threads) {
+        IndexSnapshot.file().delete(); // בנייה מהקבצים ולא מהתמונה
+        DataIndex.unloadAll();
+        java.io.PrintStream console = System.out;
+        java.io.ByteArrayOutputStream output = new java.io.ByteArrayOutputStream();
+        System.setProperty("bavli.index.threads", String.valueOf(threads));
+        try {
+            System.setOut(new java.io.PrintStream(output, true, StandardCharsets.UTF_8));
+            DataIndex.buildMishnaIndex();
+        } finally {
+            System.setOut(console);
+            System.clearProperty("bavli.index.threads");
+        }
+        return new String[] {mishnaIndexText(), output.toString(StandardCharsets.UTF_8)};
+    }
+    
+    private static void runCorpusScannerTests() {
+        startTestGroup("בדיקות סריקת קורפוס אחת לכל האינדקסים");
+        withFixtureCorpus(() -> {
+            String mishnaSeparately = buildMishnaIndexWithThreads(2)[0];
+            IndexSnapshot.file().delete();
+            DataIndex.unloadAll();
+            DataIndex.loadIndex();
+            List<String> masechtot = DataIndex.getAllMasechtot();
+            assertEquals("בדיקת מסכתות הקורפוס", 2, masechtot.size());
+            Map<String, List<Integer>> dafs = new HashMap<>();
+            for (String masechet : masechtot) dafs.put(masechet, DataIndex.getDafsForMasechet(masechet));
+            
+            IndexSnapshot.file().delete();
+            DataIndex.unloadAll();
+            DataIndex.loadAllIndexes(); // שני האינדקסים בסריקה אחת
+            assertEquals("בדיקת רשימת מסכתות בסריקה משותפת", masechtot, DataIndex.getAllMasechtot());
+            boolean same = true;
+            for (String masechet : masechtot) same &= dafs.get(masechet).equals(DataIndex.getDafsForMasechet(masechet));
+            assertTrue("בדיקת דפים בסריקה משותפת", same);
+            assertEquals("בדיקת אינדקס משניות בסריקה משותפת", mishnaSeparately, mishnaIndexText());
+            
+            // בונה נוסף מקבל את טקסט העמודים באותה סריקה
+            java.util.concurrent.atomic.AtomicInteger amudim = new java.util.concurrent.atomic.AtomicInteger();
+            java.util.concurrent.atomic.AtomicInteger finished = new java.util.concurrent.atomic.AtomicInteger();
+            CorpusScanner.IndexBuilder<Integer> counter = new CorpusScanner.IndexBuilder<Integer>() {
+                public boolean needsText() {
+                    return true;
+                }
+                public Integer scanDaf(String masechet, int daf, List<CorpusScanner.Amud> texts, List<String> log) {
+                    amudim.addAndGet(texts.size());
+                    return texts.size();
+                }
+                public void finishMasechet(String masechet, Map<Integer, Integer> entries) {
+                    finished.incrementAndGet();
+                }
+            };
+            assertTrue("בדיקת סריקה עם בונה נוסף", CorpusScanner.scanAll(Arrays.asList(counter)));
+            assertEquals("בדיקת סיום לכל מסכת", masechtot.size(), finished.get());
+            assertEquals("בדיקת קבלת טקסט העמודים", 16, amudim.get());
+        });
+    }
+    
+    private static void runCompactIndexTests() {
+        startTestGroup("בדיקות ייצוג ארוז של האינדקס");
+        
+        Map<Integer, DataIndex.PageInfo> pages = new HashMap<>();
+        pages.put(5, new DataIndex.PageInfo(true, 2));
+        pages.put(9, new DataIndex.PageInfo(true, -1));
+        pages.put(12, new DataIndex.PageInfo(false, 3));
+        MishnaPages packed = MishnaPages.of(pages);
+        assertEquals("בדיקת מספר דפים ארוזים", 3, packed.size());
+        assertTrue("בדיקת דפים ארוזים בסדר עולה", Arrays.equals(new int[] {5, 9, 12}, packed.dafs()));
+        assertTrue("בדיקת משנה ופרק בדף ארוז", packed.hasMishna(5) && packed.perek(5) == 2);
+        assertTrue("בדיקת פרק לא ידוע בדף ארוז", packed.hasMishna(9) && packed.perek(9) == -1);
+        assertTrue("בדיקת פרק בלי משנה בדף ארוז", !packed.hasMishna(12) && packed.perek(12) == 3);
+        assertTrue("בדיקת דף בלי מידע", !packed.contains(7) && !packed.contains(4) && !packed.contains(200));
+        
+        withFixtureCorpus(() -> {
+            DataIndex.loadIndex();
+            List<Integer> dafs = DataIndex.getDafsForMasechet("ברכות");
+            assertEquals("בדיקת רשימת דפים ממוינת", "[2, 3, 4]", dafs.toString());
+            boolean exists = true;
+            for (int daf : dafs) exists &= DataIndex.dafExists("ברכות", daf);
+            assertTrue("בדיקת קיום כל דף ברשימה", exists);
+            assertTrue("בדיקת דף שלא קיים", !DataIndex.dafExists("ברכות", 5) && !DataIndex.dafExists("ברכות", 1));
+            try {
+                dafs.add(999);
+                fail("בדיקת רשימת דפים לקריאה בלבד", "הרשימה שונתה");
+            } catch (UnsupportedOperationException e) {
+                assertTrue("בדיקת רשימת דפים לקריאה בלבד", DataIndex.getDafsForMasechet("ברכות").size() == dafs.size());
+            }
+        });
+    }
+    
+    private static void runPerekIndexTests() {
+        startTestGroup("בדיקות אינדקס גבולות הפרקים");
+        
+        // פרק 1 מ-2א, פרק 2 מאמצע 5ב, כותרת חוזרת של פרק 2 ב-6א, פרק 3 מ-8א; המסכת מסתיימת בדף 9
+        PerekIndex pereks = PerekIndex.of(
+                new long[] {PerekIndex.position(5, 1, 7), PerekIndex.position(2, 0, 0),
+                            PerekIndex.position(6, 0, 0), PerekIndex.position(8, 0, 0)},
+                new int[] {2, 1, 2, 3}, 9);
+        assertEquals("בדיקת איחוד כותרת חוזרת", 3, pereks.size());
+        assertEquals("בדיקת פרק בתחילת המסכת", 1, pereks.perekAt(2, 0, 0));
+        assertEquals("בדיקת פרק לפני כותרת באמצע עמוד", 1, pereks.perekAt(5, 1, 6));
+        assertEquals("בדיקת פרק אחרי כותרת באמצע עמוד", 2, pereks.perekAt(5, 1, 7));
+        assertEquals("בדיקת פרק אחרון", 3, pereks.perekAt(9, 1, 40));
+        assertEquals("בדיקת מיקום לפני הכותרת הראשונה", -1, pereks.perekAt(1, 1, 0));
+        assertEquals("בדיקת עמודי פרק 2", "[5b[7,), 6a[0,), 6b[0,), 7a[0,), 7b[0,)]", pereks.spans(2).toString());
+        assertEquals("בדיקת עמודי פרק 1 עד הכותרת הבאה", "[2a[0,), 2b[0,), 3a[0,), 3b[0,), 4a[0,), 4b[0,), 5a[0,), 5b[0,7)]",
+                     pereks.spans(1).toString());
+        assertEquals("בדיקת פרק אחרון עד סוף המסכת", "[8a[0,), 8b[0,), 9a[0,), 9b[0,)]", pereks.spans(3).toString());
+        assertTrue("בדיקת פרק בלי כותרת", pereks.spans(4).isEmpty());
+        
+        withFixtureCorpus(() -> {
+            DataIndex.loadAllIndexes();
+            assertEquals("בדיקת פרק של דף מהקורפוס", 2, DataIndex.getPerekOfDaf("שבת", 5));
+            assertEquals("בדיקת פרק של דף לפני כותרת בעמוד ב", 1, DataIndex.getPerekOfDaf("שבת", 4));
+            String spans = DataIndex.getPerekSpans("שבת", 2).toString();
+            assertEquals("בדיקת עמודי פרק מהקורפוס", "[4b[1,), 5a[0,), 5b[0,), 6a[0,), 6b[0,)]", spans);
+            
+            DataIndex.unloadAll();
+            DataIndex.buildMishnaIndex(); // טעינה מהתמונה השמורה
+            assertEquals("בדיקת גבולות פרקים מהתמונה השמורה", spans, DataIndex.getPerekSpans("שבת", 2).toString());
+            assertEquals("בדיקת פרק של דף מהתמונה השמורה", 1, DataIndex.getPerekOfDaf("שבת", 4));
+            assertEquals("בדיקת דפי פרק לפי אינדקס הפרקים", "[4, 5, 6]", DataIndex.getPerekDafs("שבת", 2).toString());
+            assertTrue("בדיקת דפי פרק שאינו באינדקס", DataIndex.getPerekDafs("שבת", 40).isEmpty());
+            String[] dafs = captureOutput(() -> DataIndex.getDafsWithMishna("שבת", 2).toString());
+            assertEquals("בדיקת דפי פרק עם משנה", "[4, 5]", dafs[0]);
+            assertEquals("בדיקת דפי פרק בלי פלט", "", dafs[1]);
+            assertEquals("בדיקת כל דפי המשנה לפרק שאינו באינדקס", "[2, 3, 4, 5]",
+                         DataIndex.getDafsWithMishna("שבת", 40).toString());
+            assertEquals("בדיקת דפי משנה לפי אינדקס המשניות", "[2, 4]", DataIndex.getDafsWithMishna("ברכות", 1).toString());
+            assertTrue("בדיקת מסכת שלא קיימת", DataIndex.getDafsWithMishna("מסכת שלא קיימת", 1).isEmpty());
+            List<String> mishnayot = MishnaExtractor.getMishnayotOfPerek("שבת", 2);
+            assertTrue("בדיקת חילוץ משניות לפי גבולות הפרק", mishnayot != null && !mishnayot.isEmpty());
+        });
+    }
+    
+    private static void runGematriaTests() {
+        startTestGroup("בדיקות פענוח ועיצוב גימטריה");
+        
+        assertEquals("בדיקת טו", 15, Gematria.parse("טו"));
+        assertEquals("בדיקת טז", 16, Gematria.parse("טז"));
+        assertEquals("בדיקת קעו מעל התקרה הישנה", 176, Gematria.parse("קעו"));
+        assertEquals("בדיקת גרשיים", 176, Gematria.parse("קע\"ו"));
+        assertEquals("בדיקת גרשיים עבריים", 15, Gematria.parse("ט״ו"));
+        assertEquals("בדיקת גרש", 9, Gematria.parse("ט'"));
+        assertEquals("בדיקת תתק", 900, Gematria.parse("תתק"));
+        assertEquals("בדיקת אלפים", 5786, Gematria.parse("ה'תשפ\"ו"));
+        assertEquals("בדיקת אות סופית", 40, Gematria.parse("ם"));
+        assertEquals("בדיקת רווחים מסביב", 12, Gematria.parse("  יב "));
+        assertEquals("בדיקת סדר הפוך", 0, Gematria.parse("אי"));
+        assertEquals("בדיקת שתי עשרות", 0, Gematria.parse("יכ"));
+        assertEquals("בדיקת טו לא בסוף", 0, Gematria.parse("טוא"));
+        assertEquals("בדיקת תו לא עברי", 0, Gematria.parse("י5"));
+        assertEquals("בדיקת מחרוזת ריקה", 0, Gematria.parse(""));
+        assertEquals("בדיקת טווח בתוך שורה", 23, Gematria.parse("דף כג א", 3, 5));
+        assertEquals("בדיקת המילה שאחרי פרק", 7, Gematria.parseWord("מסכת שבת פרק ז שם", 12));
+        assertEquals("בדיקת אין מילה", 0, Gematria.parseWord("פרק   ", 3));
+        
+        assertEquals("בדיקת עיצוב 15", "טו", Gematria.numberToHebrew(15));
+        assertEquals("בדיקת עיצוב 116", "קטז", Gematria.numberToHebrew(116));
+        assertEquals("בדיקת עיצוב 176", "קעו", Gematria.numberToHebrew(176));
+        assertEquals("בדיקת עיצוב 900", "תתק", Gematria.numberToHebrew(900));
+        assertEquals("בדיקת עיצוב אלפים", "ה'תשפו", Gematria.numberToHebrew(5786));
+        assertEquals("בדיקת עיצוב אפס", "", Gematria.numberToHebrew(0));
+        boolean roundTrip = true;
+        for (int n = 1; n < 10_000; n++) {
+            if (n % 1000 == 0) continue; // ה' לבדו נקרא 5
+            roundTrip &= Gematria.parse(Gematria.numberToHebrew(n)) == n;
+        }
+        assertTrue("בדיקת עיצוב ופענוח חוזר עד 9999", roundTrip);
+    }
+    
+    private static void runLazyIndexTests() {
+        startTestGroup("בדיקות טעינת אינדקס לפי דרישה");
+        withFixtureCorpus(() -> {
+            File snapshotFile = IndexSnapshot.file();
+            assertTrue("בדיקת רשימת מסכתות בלי טעינה", DataIndex.getAllMasechtot().size() == 2
+                       && DataIndex.loadedMasechtot() == 0);
+            assertTrue("בדיקת מסכת שלא קיימת", !DataIndex.masechetExists("מסכת שלא קיימת")
+                       && TractateIds.find("מסכת שלא קיימת") < 0);
+            
+            assertTrue("בדיקת דף בלי טעינה מוקדמת", DataIndex.dafExists("ברכות", 2));
+            assertEquals("בדיקת טעינת המסכת המבוקשת בלבד", 1, DataIndex.loadedMasechtot());
+            assertEquals("בדיקת אינדקס משניות לא נטען", 0, DataIndex.loadedMishna());
+            
+            // כמה תהליכונים על אותה מסכת - נסרקת פעם אחת
+            String[] output = captureOutput(() -> {
+                Thread[] threads = new Thread[4];
+                int[] pereks = new int[threads.length];
+                for (int i = 0; i < threads.length; i++) {
+                    int index = i;
+                    threads[i] = new Thread(() -> pereks[index] = DataIndex.getPerekOfDaf("שבת", 5));
+                    threads[i].start();
+                }
+                for (Thread thread : threads) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return Arrays.toString(pereks);
+            });
+            assertEquals("בדיקת פרק מכל התהליכונים", "[2, 2, 2, 2]", output[0]);
+            assertEquals("בדיקת סריקה אחת של המסכת", 1, output[1].split("מעבד מסכת: שבת", -1).length - 1);
+            assertEquals("בדיקת טעינת משניות של המסכת בלבד", 1, DataIndex.loadedMishna());
+            assertTrue("בדיקת אין כתיבת תמונה בכל טעינה", !snapshotFile.exists());
+            
+            DataIndex.saveLoaded(); // כמו ביציאה מהתוכנית
+            IndexSnapshot.Contents saved = IndexSnapshot.read(IndexSnapshot.fingerprint());
+            assertTrue("בדיקת שמירת המסכתות שנטענו", saved != null && saved.dafs != null && saved.mishna != null
+                       && saved.dafs.containsKey("ברכות") && saved.mishna.containsKey("שבת")
+                       && !saved.mishna.containsKey("ברכות"));
+            
+            DataIndex.unloadAll();
+            output = captureOutput(() -> String.valueOf(DataIndex.getPerekOfDaf("שבת", 4)));
+            assertEquals("בדיקת פרק מהתמונה השמורה", "1", output[0]);
+            assertTrue("בדיקת טעינה מהתמונה בלי סריקה", !output[1].contains("מעבד מסכת"));
+            
+            DataIndex.loadAllIndexes(); // טעינה מוקדמת עדיין אפשרית
+            assertEquals("בדיקת טעינה מוקדמת של כל המסכתות", 2, DataIndex.loadedMasechtot());
+        });
+    }
+    
+    /**
+     * Runs {@code tests} against a small corpus in a temporary data directory ({@link AppConfig#DATA_DIR_SETTING}):
+     * ברכות דפים 2-4 with one perek, and שבת דפים 2-6 where perek ב starts on line 1 of 4b.
+     */
+    private static void withFixtureCorpus(Runnable tests) {
+        File dataDir;
+        try {
+            dataDir = Files.createTempDirectory("bavli-corpus").toFile();
+            writeFixtureCorpus(new File(dataDir, "pages"));
+        } catch (IOException e) {
+            fail("יצירת קורפוס לבדיקה", e.getMessage());
+            return;
+        }
+        String dataSetting = System.getProperty(AppConfig.DATA_DIR_SETTING);
+        System.setProperty(AppConfig.DATA_DIR_SETTING, dataDir.getPath());
+        resetCorpusState();
+        try {
+            tests.run();
+        } finally {
+            if (dataSetting != null) System.setProperty(AppConfig.DATA_DIR_SETTING, dataSetting);
+            else System.clearProperty(AppConfig.DATA_DIR_SETTING);
+            resetCorpusState();
+            try {
+                readTree(dataDir);
+            } catch (IOException e) {
+                System.out.println("לא ניתן לנקות את קורפוס הבדיקה: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void writeFixtureCorpus(File pagesDir) throws IOException {
+        String gemara = "גמרא   תנו רבנן\n";
+        FileManager.savePageToFile(pagesDir, "ברכות", 2, 'א', "מסכת ברכות פרק א\nמשנה   מאימתי קורין את שמע בערבין\n" + gemara);
+        FileManager.savePageToFile(pagesDir, "ברכות", 2, 'ב', gemara);
+        FileManager.savePageToFile(pagesDir, "ברכות", 3, 'א', gemara);
+        FileManager.savePageToFile(pagesDir, "ברכות", 3, 'ב', gemara);
+        FileManager.savePageToFile(pagesDir, "ברכות", 4, 'א', "משנה   רבן גמליאל אומר עד שיעלה עמוד השחר\n" + gemara);
+        FileManager.savePageToFile(pagesDir, "ברכות", 4, 'ב', gemara);
+
+        FileManager.savePageToFile(pagesDir, "שבת", 2, 'א', "מסכת שבת פרק א\nמשנה   יציאות השבת שתים שהן ארבע\n" + gemara);
+        FileManager.savePageToFile(pagesDir, "שבת", 2, 'ב', gemara);
+        FileManager.savePageToFile(pagesDir, "שבת", 3, 'א', "משנה   לא ישב אדם לפני הספר\n" + gemara);
+        FileManager.savePageToFile(pagesDir, "שבת", 3, 'ב', gemara);
+        FileManager.savePageToFile(pagesDir, "שבת", 4, 'א', gemara);
+        FileManager.savePageToFile(pagesDir, "שבת", 4, 'ב', gemara + "פרק ב במה מדליקין\nמשנה   במה מדליקין ובמה אין מדליקין\n");
+        FileManager.savePageToFile(pagesDir, "שבת", 5, 'א', gemara);
+        FileManager.savePageToFile(pagesDir, "שבת", 5, 'ב', "משנה   אין מדליקין בשמן שריפה ביום טוב\n" + gemara);
+        FileManager.savePageToFile(pagesDir, "שבת", 6, 'א', gemara);
+        FileManager.savePageToFile(pagesDir, "שבת", 6, 'ב', gemara);
+    }
+
+    /** Drops the loaded indexes, the opened pack, the cached pages and the snapshot, as at startup. */
+    private static void resetCorpusState() {
+        DataIndex.unloadAll();
+        PackedCorpus.reset();
+        CacheManager.clear();
+        DerivedCache.clear();
+        IndexSnapshot.file().delete();
+    }
+
+    /** @return the task's result and the console output it printed */
+    private static String[] captureOutput(java.util.function.Supplier<String> task) {
+        java.io.PrintStream console = System.out;
+        java.io.ByteArrayOutputStream output = new java.io.ByteArrayOutputStream();
+        String result;
+        try {
+            System.setOut(new java.io.PrintStream(output, true, StandardCharsets.UTF_8));
+            result = task.get();
+        } finally {
+            System.setOut(console);
+        }
+        return new String[] {result, output.toString(StandardCharsets.UTF_8)};
+    }
+    
+    /** @return the Mishna index as text, one line per page */
+    private static String mishnaIndexText() {
+        StringBuilder index = new StringBuilder();
+        for (String masechet : DataIndex.getAllMasechtot()) {
+            MishnaPages pages = DataIndex.getMishnaPages(masechet);
+            if (pages == null) continue;
+            for (int daf : pages.dafs()) {
+                index.append(masechet).append(' ').append(daf).append(' ')
+                     .append(pages.hasMishna(daf)).append(' ').append(pages.perek(daf)).append('\n');
+            }
+        }
+        return index.toString();
+    }
+    
+    private static File findAmudFile(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return null;
+        Arrays.sort(files);
+        for (File file : files) {
+            File found = file.isDirectory() ? findAmudFile(file) : file;
+            if (found != null) return found;
+        }
+        return null;
+    }
+    
+    /** Waits up to 10 seconds for the watcher thread to bring about {@code condition}. */
+    private static void waitFor(java.util.function.BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private static Map<String, String> readTree(File dir) throws IOException {
+        Map<String, String> files = new HashMap<>();
+        try (java.util.stream.Stream<java.nio.file.Path> paths = Files.walk(dir.toPath())) {
+            for (java.nio.file.Path path : (Iterable<java.nio.file.Path>) paths::iterator) {
+                path.toFile().deleteOnExit(); // נמחק בסדר הפוך - קבצים לפני תיקיות
+                if (Files.isRegularFile(path)) {
+                    files.put(dir.toPath().relativize(path).toString(), new String(Files.readAllBytes(path)));
+                }
+            }
+        }
+        return files;
+    }
+    
     /**
      * בדיקות נוספות לדוגמה
      */
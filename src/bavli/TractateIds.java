@@ -0,0 +1,97 @@
+package bavli;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of tractate names to small int IDs, used in {@link PageKey}. Names are normalized the way the
+ * {@code pages/} directories are named (Hebrew letters, Latin letters, digits and spaces; lower case) without a
+ * regular expression, and the raw spellings callers pass in are remembered, so repeated lookups are one hash
+ * lookup. IDs are assigned in first-use order and are only stable within one run. Only names of real tractates
+ * get an ID: {@link #id} is for names taken from the corpus, and {@link #lookup} resolves caller input without
+ * interning names that are not in it. At most {@link #MAX_SPELLINGS} raw spellings are remembered.
+ */
+public final class TractateIds {
+
+    /** Largest number of distinct tractates; IDs fit in {@link PageKey}'s 16 bits. */
+    static final int MAX_TRACTATES = 1 << 16;
+
+    /** Raw spellings remembered on top of the normalized names; further spellings are normalized on each lookup. */
+    static final int MAX_SPELLINGS = 4096;
+
+    private static final ConcurrentHashMap<String, Integer> byName = new ConcurrentHashMap<>(); // שם מנורמל או כתיב שכבר נראה
+    private static volatile String[] names = new String[0]; // מזהה -> שם מנורמל, מוחלף בהוספה
+
+    private TractateIds() {
+    }
+
+    /** @return the ID of the tractate, assigning one on first use; for names from the corpus, see {@link #lookup} */
+    public static int id(String masechet) {
+        Integer id = byName.get(masechet);
+        if (id != null) return id;
+        String normalized = normalize(masechet);
+        synchronized (TractateIds.class) {
+            id = byName.get(normalized);
+            if (id == null) {
+                if (names.length >= MAX_TRACTATES) throw new IllegalStateException("יותר מדי מסכתות");
+                id = names.length;
+                String[] grown = Arrays.copyOf(names, id + 1);
+                grown[id] = normalized;
+                names = grown;
+                byName.put(normalized, id);
+            }
+            if (byName.size() < names.length + MAX_SPELLINGS) {
+                byName.putIfAbsent(masechet, id); // הכתיב המקורי - בפעם הבאה בלי נרמול
+            }
+            return id;
+        }
+    }
+
+    /** @return the ID of the tractate, or -1 if it was never assigned one */
+    public static int find(String masechet) {
+        Integer id = byName.get(masechet);
+        if (id == null) id = byName.get(normalize(masechet));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Resolves a tractate name given by a caller: its ID if it already has one or the tractate is in the corpus
+     * ({@link CorpusScanner#contains}), otherwise -1 without assigning an ID or remembering the spelling.
+     */
+    public static int lookup(String masechet) {
+        int id = find(masechet);
+        if (id >= 0) return id;
+        return CorpusScanner.contains(normalize(masechet)) ? id(masechet) : -1;
+    }
+
+    /** @return the normalized name for an ID, or null if no tractate has it (e.g. -1 from {@link #find}) */
+    public static String name(int id) {
+        String[] current = names;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * Keeps Hebrew letters (א-ת), Latin letters, digits and spaces, lower-casing Latin letters; returns the same
+     * string when nothing changes.
+     */
+    public static String normalize(String name) {
+        int length = name.length();
+        int i = 0;
+        while (i < length && isKept(name.charAt(i)) && !(name.charAt(i) >= 'A' && name.charAt(i) <= 'Z')) i++;
+        if (i == length) return name; // כבר מנורמל - בלי הקצאה
+
+        StringBuilder builder = new StringBuilder(length);
+        builder.append(name, 0, i);
+        for (; i < length; i++) {
+            char c = name.charAt(i);
+            if (!isKept(c)) continue;
+            builder.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isKept(char c) {
+        return (c >= 'א' && c <= 'ת') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9') || c == ' ';
+    }
+}
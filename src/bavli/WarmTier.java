@@ -0,0 +1,123 @@
+package bavli;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Second cache tier for pages evicted from the on-heap {@link PageCache}: UTF-8 bytes kept in one direct
+ * (off-heap) buffer used as a ring log, so the pages cost the garbage collector nothing. New pages overwrite
+ * the oldest ones; a page read from here is removed and promoted back to the heap tier by {@link CacheManager}.
+ * The buffer is allocated on first use.
+ */
+public class WarmTier {
+
+    /** One page stored in the ring; {@code start} is a position in the ever-growing write stream. */
+    private static final class Slot {
+        final String key;
+        final long start;
+        final int length;
+        boolean live = true;
+
+        Slot(String key, long start, int length) {
+            this.key = key;
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    private final int capacity;
+    private ByteBuffer buffer; // נוצר בשימוש הראשון
+    private final Map<String, Slot> index = new HashMap<>();
+    private final ArrayDeque<Slot> fifo = new ArrayDeque<>(); // לפי סדר הכתיבה - הישן ביותר ראשון
+    private long writePosition; // מיקום בזרם הכתיבה (לא מתאפס); המיקום בחוצץ הוא modulo capacity
+    private long liveBytes;
+    private long overwritten; // עמודים חיים שנדרסו ע"י כתיבות חדשות
+
+    public WarmTier(long capacityBytes) {
+        this.capacity = (int) Math.max(0, Math.min(Integer.MAX_VALUE - 8, capacityBytes));
+    }
+
+    /** @return whether the tier stores anything at all (capacity &gt; 0) */
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /** Stores a page, overwriting the oldest pages if the ring is full. Pages larger than the tier are ignored. */
+    public synchronized void put(String key, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > capacity) return;
+        if (buffer == null) buffer = ByteBuffer.allocateDirect(capacity);
+        remove(key);
+
+        int offset = (int) (writePosition % capacity);
+        if (offset + bytes.length > capacity) {
+            writePosition += capacity - offset; // אין מקום עד סוף החוצץ - מתחילים מההתחלה
+            offset = 0;
+        }
+        long end = writePosition + bytes.length;
+        while (!fifo.isEmpty() && fifo.peekFirst().start < end - capacity) {
+            Slot old = fifo.pollFirst(); // האזור שלו נדרס בכתיבה הזאת
+            if (old.live) {
+                index.remove(old.key);
+                liveBytes -= old.length;
+                overwritten++;
+            }
+        }
+        buffer.put(offset, bytes);
+        Slot slot = new Slot(key, writePosition, bytes.length);
+        fifo.addLast(slot);
+        index.put(key, slot);
+        liveBytes += bytes.length;
+        writePosition = end;
+    }
+
+    /** Removes and returns the page, or null if it is not in the tier. */
+    public synchronized String take(String key) {
+        Slot slot = index.remove(key);
+        if (slot == null) return null;
+        slot.live = false;
+        liveBytes -= slot.length;
+        byte[] bytes = new byte[slot.length];
+        buffer.get((int) (slot.start % capacity), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public synchronized boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    public synchronized void remove(String key) {
+        Slot slot = index.remove(key);
+        if (slot != null) {
+            slot.live = false; // המקום ישוחרר כשהטבעת תעבור עליו
+            liveBytes -= slot.length;
+        }
+    }
+
+    public synchronized void clear() {
+        index.clear();
+        fifo.clear();
+        liveBytes = 0;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /** UTF-8 bytes of the pages currently stored. */
+    public synchronized long usedBytes() {
+        return liveBytes;
+    }
+
+    /** Number of live pages dropped because newer pages overwrote them. */
+    public synchronized long overwrittenCount() {
+        return overwritten;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+}